@@ -20,6 +20,7 @@ import org.bukkit.map.MapRenderer;
 import org.bukkit.map.MapView;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.Vector;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
@@ -41,8 +42,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
 
 import javax.imageio.ImageIO;
 
@@ -51,6 +53,7 @@ class BindManager {
 
     private final JavaPlugin plugin;
     private final PlayerManager playerManager;
+    private final MapSendScheduler sendScheduler;
     private final FrameSourceLoader frameSourceLoader;
     private final MediaManager mediaManager;
 
@@ -63,10 +66,29 @@ class BindManager {
     private final Type persistedListType = new TypeToken<List<ScreenStore.PersistedScreen>>() {
     }.getType();
 
-    private byte[] lut = null;
+    private volatile ColorLut lut = null;
+    // dither.mode 不为 none 时视频/直播帧先抖动再量化，跟着 LUT 一起换
+    private volatile Dither dither = null;
 
     private int tickerTask = -1;
 
+    private final boolean sharedCanvas;
+    private final boolean offHeapBuffers;
+    private static final int PRESSURE_BUFFER_DIVISOR = 4;
+    private final long bufferBudgetBytes;
+    private final FrameCodec.Mode bufferCompression;
+    private final DecodeExecutors decoders;
+    // 等旧解码流水线退出的上限：新流水线开工前在 io 线程上等，关服时 stop() 里等；主线程停播时不等
+    private final long decodeStopTimeoutMillis;
+    private final Dither.Mode ditherMode;
+    private final double ditherAmount;
+    private final Dither.Wavefront ditherWavefront;
+    private final MemoryPressure memoryPressure;
+    private final int staggerMaxMapsPerTick;
+    private final LodPolicy lodTemplate;
+    private final boolean cullingEnabled;
+    private final double cullingConeCos;
+
     // media ops moved to MediaManager
 
     BindManager(JavaPlugin plugin, PlayerManager playerManager) {
@@ -75,6 +97,30 @@ class BindManager {
         this.frameSourceLoader = new FrameSourceLoader(plugin);
         this.mediaManager = new MediaManager(plugin);
         this.DEBUG = plugin.getConfig().getBoolean("debug", false);
+        this.sharedCanvas = plugin.getConfig().getBoolean("render.shared-canvas", false);
+        this.offHeapBuffers = plugin.getConfig().getBoolean("buffer.off-heap", false);
+        this.bufferBudgetBytes = Math.max(0L, plugin.getConfig().getLong("buffer.max-total-mb", 0L)) * 1024L * 1024L;
+        this.bufferCompression = FrameCodec.Mode.parse(
+                plugin.getConfig().getString("buffer.compression", "none"), plugin.getLogger());
+        if (offHeapBuffers && bufferCompression != FrameCodec.Mode.NONE)
+            plugin.getLogger().warning("[mplay] buffer.compression is set; buffer.off-heap is ignored.");
+        this.decoders = new DecodeExecutors(plugin.getLogger(), plugin.getConfig().getInt("decode.cpu-threads", 0));
+        this.decodeStopTimeoutMillis = Math.max(0L, plugin.getConfig().getLong("decode.stop-timeout-ms", 500L));
+        dbg("decode executors: " + decoders.describe());
+        this.ditherMode = Dither.Mode.parse(plugin.getConfig().getString("dither.mode", "none"), plugin.getLogger());
+        this.ditherAmount = plugin.getConfig().getDouble("dither.amount", 12.0);
+        this.ditherWavefront = Dither.Wavefront.parse(plugin.getConfig().getString("dither.wavefront", "auto"), plugin.getLogger());
+        this.memoryPressure = new MemoryPressure(plugin.getConfig().getDouble("memory.pressure-threshold", 0.0));
+        if (!memoryPressure.start())
+            dbg("memory pressure monitoring disabled");
+        this.staggerMaxMapsPerTick = plugin.getConfig().getInt("publish.stagger-max-maps-per-tick", 0);
+        this.lodTemplate = LodPolicy.parse(plugin.getConfig().getStringList("lod.bands"), plugin.getLogger());
+        this.cullingEnabled = plugin.getConfig().getBoolean("culling.enabled", false);
+        double cone = plugin.getConfig().getDouble("culling.view-cone-degrees", 75.0);
+        this.cullingConeCos = Math.cos(Math.toRadians(Math.max(0.0, Math.min(180.0, cone))));
+        this.sendScheduler = new MapSendScheduler(
+                plugin.getConfig().getInt("network.max-bytes-per-tick-per-player", 0),
+                plugin.getConfig().getInt("network.max-maps-per-tick-per-player", 0));
     }
 
     void loadPersistedScreens() {
@@ -102,8 +148,13 @@ class BindManager {
         }
     }
 
-    void setLUT(byte[] lut) {
+    // palette：索引 -> 0xRRGGBB（LutBuilder.loadPalette），误差扩散要用选中颜色的 RGB
+    void setLUT(ColorLut lut, int[] palette) {
+        Dither d = Dither.create(ditherMode, ditherAmount, ditherWavefront, lut, palette);
+        this.dither = d;
         this.lut = lut;
+        if (d != null)
+            dbg("dither: " + d.describe());
     }
 
     boolean isLutLoaded() {
@@ -132,6 +183,12 @@ class BindManager {
             for (ScreenSession session : new ArrayList<>(sessions.values())) {
                 session.onTick(MapFramePlayer.TICK);
             }
+            sendScheduler.flush(MapFramePlayer.TICK);
+            if ((MapFramePlayer.TICK % 20) == 0)
+                checkMemoryPressure();
+            // 压缩后的平均帧大小会变，定期按新的大小重新分预算
+            if (bufferBudgetBytes > 0 && bufferCompression != FrameCodec.Mode.NONE && (MapFramePlayer.TICK % 100) == 0)
+                rebalanceBuffers();
         }, 1L, 1L);
     }
 
@@ -273,6 +330,9 @@ class BindManager {
         }
         saveSessions();
         sessions.clear();
+        sendScheduler.clear();
+        memoryPressure.stop();
+        decoders.shutdown(decodeStopTimeoutMillis);
         lastActiveId = null;
         if (tickerTask != -1) {
             Bukkit.getScheduler().cancelTask(tickerTask);
@@ -361,6 +421,7 @@ class BindManager {
         if (session != null) {
             session.recordPlacedBarriers(placedBarriers);
             session.recordFrames(frames);
+            session.group.facing = face.getOppositeFace();
             session.initBlackFrame();
             saveSessions();
         }
@@ -388,14 +449,12 @@ class BindManager {
 
                 for (MapRenderer r0 : new ArrayList<>(view.getRenderers()))
                     view.removeRenderer(r0);
-                DataRenderer renderer = new DataRenderer();
+                DataRenderer renderer = newRenderer(radius);
                 view.setScale(MapView.Scale.NORMAL);
                 view.setTrackingPosition(false);
                 view.setUnlimitedTracking(false);
                 view.addRenderer(renderer);
 
-                renderer.setRange(w, centerLoc, radius);
-
                 group.members.add(new Binding(mapId, w, view, renderer));
             }
         }
@@ -483,6 +542,10 @@ class BindManager {
         return session.describe();
     }
 
+    List<String> listNetStats() {
+        return sendScheduler.describe();
+    }
+
     List<String> listStatus() {
         List<String> out = new ArrayList<>();
         for (ScreenSession session : sessions.values()) {
@@ -513,6 +576,15 @@ class BindManager {
         for (ScreenSession session : sessions.values()) {
             session.forgetViewer(playerId);
         }
+        sendScheduler.forget(playerId);
+        playerManager.forget(playerId);
+    }
+
+    // radius<=0 没有逐玩家范围判断，所有人看到同一画面，用共享画布即可；
+    // render.shared-canvas=true 时范围只在发包时过滤
+    private DataRenderer newRenderer(int radius) {
+        boolean contextual = radius > 0 && !sharedCanvas;
+        return new DataRenderer(contextual);
     }
 
     private ScreenSession registerSession(BindingGroup group) {
@@ -552,6 +624,76 @@ class BindManager {
         }
     }
 
+    private void checkMemoryPressure() {
+        int change = memoryPressure.poll();
+        if (change == 0)
+            return;
+        int dropped = rebalanceBuffers();
+        if (change > 0) {
+            int paused = 0;
+            for (ScreenSession s : sessions.values()) {
+                if (s.pausedForMemory)
+                    paused++;
+            }
+            plugin.getLogger().warning("[mplay] heap pressure: " + memoryPressure.describe()
+                    + "; buffers cut to 1/" + PRESSURE_BUFFER_DIVISOR + ", " + paused
+                    + " unwatched screen(s) paused, " + dropped + " buffered frame(s) dropped.");
+        } else {
+            plugin.getLogger().info("[mplay] heap pressure cleared: " + memoryPressure.describe()
+                    + "; buffers restored.");
+        }
+    }
+
+    // 有屏幕开始/停止播放（或内存压力变化）时，把全局缓冲预算重新分给正在播放的屏幕；
+    // 内存压力下缓冲再缩到 1/PRESSURE_BUFFER_DIVISOR，没人看的屏幕暂停预读，多出的帧直接丢掉。
+    // 返回丢掉的帧数
+    private int rebalanceBuffers() {
+        boolean pressure = memoryPressure.active();
+        List<ScreenSession> active = new ArrayList<>();
+        for (ScreenSession s : sessions.values()) {
+            s.pausedForMemory = false;
+            if (s.isBuffering())
+                active.add(s);
+            else if (pressure)
+                s.framePool.clear();
+        }
+        int n = active.size();
+        if (n == 0)
+            return 0;
+        long[] frameBytes = new long[n];
+        int[] requested = new int[n];
+        boolean[] live = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            ScreenSession s = active.get(i);
+            frameBytes[i] = s.queuedFrameBytes();
+            requested[i] = s.requestedDepth();
+            live[i] = s.liveMode;
+        }
+        int[] limits = BufferBudget.allocate(bufferBudgetBytes, frameBytes, requested, live);
+        int dropped = 0;
+        for (int i = 0; i < n; i++) {
+            ScreenSession s = active.get(i);
+            int limit = limits[i];
+            if (pressure) {
+                if (s.viewers.size() == 0) {
+                    limit = 0;
+                    s.pausedForMemory = true;
+                } else {
+                    limit = Math.max(BufferBudget.MIN_FRAMES, limit / PRESSURE_BUFFER_DIVISOR);
+                }
+            }
+            boolean changed = s.buffer.limit() != limit;
+            s.buffer.setLimit(limit);
+            if (pressure) {
+                dropped += s.buffer.trimToLimit();
+                s.framePool.clear();
+            }
+            if (changed && (bufferBudgetBytes > 0 || pressure))
+                dbg("screen " + s.id + " buffer limit " + limit + "/" + requested[i] + " frames");
+        }
+        return dropped;
+    }
+
     private void dbg(String msg) {
         if (DEBUG)
             plugin.getLogger().info("[mplay] " + msg);
@@ -606,6 +748,7 @@ class BindManager {
             ps.centerY = g.center.getY();
             ps.centerZ = g.center.getZ();
         }
+        ps.facing = g.facing != null ? g.facing.name() : null;
         ps.mapIds = new ArrayList<>(g.members.size());
         for (Binding b : g.members)
             ps.mapIds.add(b.mapId);
@@ -671,6 +814,13 @@ class BindManager {
                 ? new Location(w, ps.centerX, ps.centerY, ps.centerZ)
                 : null;
         group.center = center;
+        if (ps.facing != null) {
+            try {
+                group.facing = BlockFace.valueOf(ps.facing);
+            } catch (IllegalArgumentException ignore) {
+                plugin.getLogger().warning("[mplay] Screen #" + ps.id + " has unknown facing: " + ps.facing);
+            }
+        }
         group.members = new ArrayList<>(ps.mapIds.size());
 
         for (int mapId : ps.mapIds) {
@@ -681,15 +831,12 @@ class BindManager {
             }
             for (MapRenderer r0 : new ArrayList<>(view.getRenderers()))
                 view.removeRenderer(r0);
-            DataRenderer renderer = new DataRenderer();
+            DataRenderer renderer = newRenderer(ps.radius);
             view.setScale(MapView.Scale.NORMAL);
             view.setTrackingPosition(false);
             view.setUnlimitedTracking(false);
             view.addRenderer(renderer);
 
-            Location centerForRenderer = (center != null) ? center : w.getSpawnLocation();
-            renderer.setRange(w, centerForRenderer, ps.radius);
-
             group.members.add(new Binding(mapId, w, view, renderer));
         }
 
@@ -726,6 +873,13 @@ class BindManager {
         return session;
     }
 
+    // 一次解码流水线的停止标记和它启动的 ffmpeg。重新开始播放时换一份新的，
+    // 还没退出的旧任务只会看到自己那份已经停掉的标记
+    private static final class DecodeRun {
+        volatile boolean running = true;
+        volatile Process proc = null;
+    }
+
     private class ScreenSession {
         final int id;
         final BindingGroup group;
@@ -734,11 +888,20 @@ class BindManager {
         private static final int MAX_BUFFER_FRAMES = 240;
         private String sourceLabel = "";
 
-        private final ConcurrentLinkedQueue<byte[]> buffer = new ConcurrentLinkedQueue<>();
-        private volatile boolean preloadRunning = false;
-        private BukkitTask preloadTask = null;
-        private BukkitTask ffmpegTask = null;
-        private Process ffmpegProc = null;
+        private final FrameRing<PaletteFrame> buffer = new FrameRing<>(MAX_BUFFER_FRAMES, this::recycleFrame);
+        private final FramePool framePool;
+        // buffer.off-heap 时排队帧的堆外存储；每次开始播放新建，停播/清屏时释放
+        private volatile FrameArena arena = null;
+        // buffer.compression 时排队帧压缩存放；null 表示不压缩
+        private final FrameCodec codec;
+        private boolean codecErrorLogged = false;
+        // 各 renderer 当前引用的帧；下一帧发布后归还到池里
+        private PaletteFrame shownFrame = null;
+        // 当前的解码流水线（文件预读 / 视频 / 直播三选一）及其停止标记
+        private DecodeExecutors.Task decodeTask = null;
+        private volatile DecodeRun decodeRun = null;
+        // 已经 cancel、可能还没退出的旧流水线；下一条流水线开工前在自己的 io 线程上等它们
+        private final List<DecodeExecutors.Task> stoppingTasks = new ArrayList<>();
 
         private boolean videoMode = false;
         private File videoFile = null;
@@ -766,10 +929,38 @@ class BindManager {
         private String lastFrameFolder = null;
         private final ResumeState resumeState = new ResumeState();
 
+        private long framesPublished = 0L;
+        private long framesUnchanged = 0L;
+        private long tilesSent = 0L;
+        private long tilesSkipped = 0L;
+        private boolean[] changed = new boolean[0];
+
+        private final LodPolicy lod;
+        // 远处（降帧）玩家上次收到本屏幕更新时的 group epoch
+        private final SeenEpochs lodSent = new SeenEpochs();
+        private long lodSkips = 0L;
+
+        // 本 tick 范围内的玩家，所有 renderer 和发包共用
+        private final ViewerSet viewers = new ViewerSet();
+        // 内存压力下因为没人看而暂停了预读
+        private boolean pausedForMemory = false;
+        private final List<PlayerManager.Tracked> nearby = new ArrayList<>();
+
+        // 背对屏幕/屏幕不在视野里的玩家；转回来时立即补发整屏。放在 ViewerSet 里，renderer 也要看
+        private final Set<UUID> culled = viewers.culled();
+        private long cullSkips = 0L;
+
         private ScreenSession(int id, BindingGroup group) {
             this.id = id;
             this.group = group;
             this.maxDistance = group.radius;
+            this.framePool = new FramePool(group.cols, group.rows, 4);
+            this.codec = bufferCompression != FrameCodec.Mode.NONE
+                    ? new FrameCodec(bufferCompression, group.cols * group.rows * PaletteFrame.TILE_BYTES)
+                    : null;
+            this.lod = lodTemplate.copy();
+            for (Binding b : group.members)
+                b.renderer.attach(viewers, lod, group);
         }
 
         void recordPlacedBarriers(List<Block> placed) {
@@ -790,6 +981,10 @@ class BindManager {
         void onTick(long tick) {
             if (group.members.isEmpty())
                 return;
+            updateViewers();
+            flushScheduledSends(tick);
+            if (!culled.isEmpty() && (tick % 5) == 0)
+                recheckCulled();
             if (!videoMode && !liveMode && frames.isEmpty())
                 return;
             if (tick < (startTick + warmupTicks))
@@ -797,12 +992,12 @@ class BindManager {
 
             if (ticksPerFrame == -1) {
                 if (frameIndex == 0 && !hasAnyPending()) {
-                    byte[] linear = buffer.poll();
-                    if (linear == null) {
+                    PaletteFrame next = pollBuffered();
+                    if (next == null) {
                         if (!videoMode && !frames.isEmpty()) {
                             try {
                                 File f0 = frames.get(0);
-                                linear = frameSourceLoader.readFrameLinear(f0, expectedWidth(), expectedHeight(), lut);
+                                next = toFrame(frameSourceLoader.readFrameTiles(f0, expectedWidth(), expectedHeight(), lut));
                             } catch (IOException e) {
                                 plugin.getLogger().warning("[mplay] single-frame read failed: " + e.getMessage());
                                 return;
@@ -811,10 +1006,10 @@ class BindManager {
                             return;
                         }
                     }
-                    if (linear == null)
+                    if (next == null)
                         return;
 
-                    publishFrame(linear);
+                    publishFrame(next);
                     frameIndex = 1;
                 }
                 return;
@@ -822,22 +1017,23 @@ class BindManager {
 
             if (ticksPerFrame == 0) {
                 if (!hasAnyPending()) {
-                    byte[] linear = buffer.poll();
-                    if (linear != null)
-                        publishFrame(linear);
+                    PaletteFrame next = pollBuffered();
+                    if (next != null)
+                        publishFrame(next);
                 }
                 return;
             }
 
             if (tick >= nextFrameTick) {
                 boolean ready = !buffer.isEmpty();
-                if (bufferTarget > 0 && buffer.size() < bufferTarget)
+                // 全局预算可能把缓冲压到 bufferTarget 以下，按实际上限等
+                if (bufferTarget > 0 && buffer.size() < Math.min(bufferTarget, buffer.limit()))
                     ready = false;
 
                 if (ready && !hasAnyPending()) {
-                    byte[] linear = buffer.poll();
-                    if (linear != null) {
-                        publishFrame(linear);
+                    PaletteFrame next = pollBuffered();
+                    if (next != null) {
+                        publishFrame(next);
 
                         if (!videoMode && !liveMode) {
                             frameIndex++;
@@ -856,41 +1052,213 @@ class BindManager {
             }
         }
 
-        private void publishFrame(byte[] linear) {
-            int w = group.cols * 128;
+        private void publishFrame(PaletteFrame frame) {
+            framesPublished++;
+            int n = group.members.size();
+            if (changed.length != n)
+                changed = new boolean[n];
+            int changedCount = 0;
+            for (int i = 0; i < n; i++) {
+                Binding b = group.members.get(i);
+                long hash = frame.tileHashes[i];
+                if (b.publishedValid && b.publishedHash == hash) {
+                    tilesSkipped++;
+                    changed[i] = false;
+                    b.renderer.rebase(frame.pixels, PaletteFrame.tileOffset(i));
+                    continue;
+                }
+                b.publishedHash = hash;
+                b.publishedValid = true;
+                changed[i] = true;
+                changedCount++;
+            }
+            // 整帧没变：不增 epoch，也不发包
+            if (changedCount == 0) {
+                framesUnchanged++;
+                retireShownFrame(frame);
+                return;
+            }
+            tilesSent += changedCount;
+
             long epoch = ++group.epochCounter;
+            long now = MapFramePlayer.TICK;
+            int rowsPerTick = staggerRowsPerTick();
 
+            int changedRow = -1;
             for (int r = 0; r < group.rows; r++) {
+                boolean rowChanged = false;
                 for (int c = 0; c < group.cols; c++) {
                     int dstIdx = r * group.cols + c;
+                    if (!changed[dstIdx])
+                        continue;
+                    if (!rowChanged) {
+                        rowChanged = true;
+                        changedRow++;
+                    }
                     Binding b = group.members.get(dstIdx);
-                    byte[] tile = sliceTile(linear, w, r, c, false);
-                    b.renderer.setStagedEpoch(epoch);
-                    b.renderer.stageFrame(tile);
+                    b.renderer.stageFrame(frame.pixels, PaletteFrame.tileOffset(dstIdx), epoch);
                     b.hasPendingFrame = true;
+                    // 按整行分带，从上往下每 tick 发一带
+                    b.scheduledSendTick = now + changedRow / rowsPerTick;
                 }
             }
 
-            List<MapView> views = new ArrayList<>(group.members.size());
-            group.members.stream().sorted(Comparator.comparingInt(x -> x.mapId)).forEach(b -> views.add(b.view));
-
             for (Binding b : group.members)
                 b.renderer.publishIfStaged();
+            retireShownFrame(frame);
 
-            Map<World, List<Player>> online = playerManager.snapshotOnlineByWorld();
-            World wld = group.members.get(0).world;
-            List<Player> players = online.get(wld);
-            if (players != null) {
-                for (Player p : players) {
-                    if (!inRange(p))
+            flushScheduledSends(now);
+        }
+
+        private String describeArena() {
+            FrameArena a = arena;
+            if (a == null)
+                return "";
+            return String.format(Locale.US, " offheap=%.1f/%.1f MB",
+                    a.usedBytes() / 1048576.0, a.reservedBytes() / 1048576.0);
+        }
+
+        // 所有 renderer 都已换到 frame 上（变化的块重新 stage，没变的 rebase），上一帧可以回池
+        private void retireShownFrame(PaletteFrame frame) {
+            if (shownFrame != null && shownFrame != frame)
+                framePool.release(shownFrame);
+            shownFrame = frame;
+        }
+
+        private void recycleFrame(PaletteFrame frame) {
+            // 压缩帧不占池里的缓冲，丢掉即可
+            if (frame instanceof FrameCodec.Compressed)
+                return;
+            if (frame instanceof FrameArena.Slot) {
+                FrameArena.Slot slot = (FrameArena.Slot) frame;
+                slot.owner.release(slot);
+            } else {
+                framePool.release(frame);
+            }
+        }
+
+        // 解码线程：压缩 / 堆外模式下把帧压缩或拷进 arena，堆上那份立刻回池给下一帧用；arena 已关闭时返回 null
+        private PaletteFrame toQueued(PaletteFrame frame) {
+            if (codec != null) {
+                PaletteFrame packed = codec.compress(frame);
+                framePool.release(frame);
+                return packed;
+            }
+            FrameArena a = arena;
+            if (a == null)
+                return frame;
+            FrameArena.Slot slot = a.store(frame);
+            framePool.release(frame);
+            return slot;
+        }
+
+        // 主线程：取下一帧；压缩 / 堆外的帧解压或拷回池里的堆上帧再交给发布
+        private PaletteFrame pollBuffered() {
+            PaletteFrame q;
+            while ((q = buffer.poll()) != null) {
+                if (q instanceof FrameCodec.Compressed) {
+                    PaletteFrame heap = framePool.acquire();
+                    try {
+                        codec.decompress((FrameCodec.Compressed) q, heap);
+                        return heap;
+                    } catch (DataFormatException e) {
+                        framePool.release(heap);
+                        if (!codecErrorLogged) {
+                            codecErrorLogged = true;
+                            plugin.getLogger().warning("[mplay] screen " + id + " dropped a corrupt buffered frame: "
+                                    + e.getMessage());
+                        }
                         continue;
-                    for (MapView v : views)
-                        p.sendMap(v);
+                    }
                 }
+                if (!(q instanceof FrameArena.Slot))
+                    return q;
+                FrameArena.Slot slot = (FrameArena.Slot) q;
+                PaletteFrame heap = framePool.acquire();
+                boolean ok = slot.owner.load(slot, heap);
+                slot.owner.release(slot);
+                if (ok)
+                    return heap;
+                framePool.release(heap);
             }
+            return null;
+        }
 
-            for (Binding b : group.members)
+        private void resetArena() {
+            closeArena();
+            if (offHeapBuffers && codec == null)
+                arena = new FrameArena(group.cols, group.rows, MAX_BUFFER_FRAMES + 1);
+        }
+
+        private void closeArena() {
+            FrameArena a = arena;
+            arena = null;
+            if (a != null)
+                a.close();
+        }
+
+        // 发送到期的地图；没开错峰时所有地图都在发布当 tick 到期。
+        // 有未发完的地图时 hasAnyPending() 会挡住下一帧，所以同一时刻最多是同一帧的上下两部分
+        private void flushScheduledSends(long tick) {
+            List<Binding> due = null;
+            for (Binding b : group.members) {
+                if (!b.hasPendingFrame || b.scheduledSendTick > tick)
+                    continue;
+                if (due == null)
+                    due = new ArrayList<>();
+                due.add(b);
+            }
+            if (due == null)
+                return;
+
+            due.sort(Comparator.comparingInt(x -> x.mapId));
+
+            long groupEpoch = group.epochCounter;
+            for (int i = 0, count = viewers.size(); i < count; i++) {
+                Player p = viewers.player(i);
+                double distSq = viewers.distSq(i);
+                UUID pid = p.getUniqueId();
+                if (!updateCulling(p, distSq)) {
+                    if (culled.contains(pid))
+                        cullSkips++;
+                    continue;
+                }
+                long msb = pid.getMostSignificantBits();
+                long lsb = pid.getLeastSignificantBits();
+                int n = lod.divisor(distSq);
+                if (n <= 1) {
+                    for (Binding b : due)
+                        sendScheduler.enqueue(p, b.view, distSq, b.renderer.changedRatio(), tick);
+                    lodSent.put(msb, lsb, groupEpoch);
+                    continue;
+                }
+                long last = lodSent.get(msb, lsb);
+                if (last >= 0 && groupEpoch - last < n) {
+                    lodSkips++;
+                    continue;
+                }
+                // 降帧玩家：把上次发送之后变过的地图一次补齐
+                for (Binding b : group.members) {
+                    if (b.renderer.epoch() > last)
+                        sendScheduler.enqueue(p, b.view, distSq, b.renderer.changedRatio(), tick);
+                }
+                lodSent.put(msb, lsb, groupEpoch);
+            }
+
+            for (Binding b : due) {
                 b.hasPendingFrame = false;
+                b.scheduledSendTick = -1L;
+            }
+        }
+
+        // 把一帧摊到帧间隔内：每 tick 至少一行，且不超过 maxMapsPerTick 张地图（至少一行）
+        private int staggerRowsPerTick() {
+            if (staggerMaxMapsPerTick <= 0)
+                return Integer.MAX_VALUE;
+            int window = Math.max(1, ticksPerFrame);
+            int spread = (group.rows + window - 1) / window;
+            int cap = Math.max(1, staggerMaxMapsPerTick / Math.max(1, group.cols));
+            return Math.max(1, Math.min(spread, cap));
         }
 
         int loadFramesFromFolder(String folderPath) {
@@ -940,6 +1308,7 @@ class BindManager {
             this.bufferTarget = 0;
             this.warmupTicks = 0;
             this.liveQueueLimit = clampLiveQueue(bufferFrames);
+            buffer.setLimit(this.liveQueueLimit);
             this.frameSizeWarningLogged = false;
             this.dumpedFirstFrame = false;
             this.liveStarter = starter;
@@ -953,6 +1322,7 @@ class BindManager {
                 this.ticksPerFrame = 0;
             else
                 this.ticksPerFrame = Math.max(1, requestedTpf);
+            lod.setSourceFps(this.ticksPerFrame > 0 ? 20.0 / this.ticksPerFrame : 20.0);
 
             this.startTick = MapFramePlayer.TICK;
             this.nextFrameTick = (this.ticksPerFrame <= 0)
@@ -962,6 +1332,7 @@ class BindManager {
             startProgressNotifier();
             startPreloaderAsync();
             resumeState.rememberLive(url, this.ticksPerFrame, this.liveQueueLimit);
+            rebalanceBuffers();
             dbg("screen " + id + " startLiveStream url=" + url + " tpf=" + this.ticksPerFrame
                     + " liveQueueLimit=" + this.liveQueueLimit);
         }
@@ -979,8 +1350,10 @@ class BindManager {
             this.dumpedFirstFrame = false;
 
             this.ticksPerFrame = (tpf < 0) ? -1 : Math.max(1, tpf);
+            lod.setSourceFps(this.ticksPerFrame > 0 ? 20.0 / this.ticksPerFrame : 20.0);
             this.loop = loop;
             this.bufferTarget = clampPlaybackBuffer(bufferTarget);
+            buffer.setLimit(effectiveBufferTarget());
             this.warmupTicks = Math.max(0, warmupTicks);
 
             this.startTick = MapFramePlayer.TICK;
@@ -991,6 +1364,7 @@ class BindManager {
             buffer.clear();
             startPreloaderAsync();
             resumeState.rememberFrames(lastFrameFolder, this.ticksPerFrame, this.loop, this.warmupTicks, this.bufferTarget);
+            rebalanceBuffers();
             dbg("screen " + id + " startPlayback frames=" + frames.size()
                     + " video=" + videoMode
                     + " live=" + liveMode
@@ -1002,6 +1376,9 @@ class BindManager {
         void stopPlayback(boolean clearResume) {
             stopPreloader();
             buffer.clear();
+            // 停播后不留空闲帧和堆外 slab 占内存
+            closeArena();
+            framePool.clear();
 
             resetRenderers();
 
@@ -1020,6 +1397,7 @@ class BindManager {
             dumpedFirstFrame = false;
             if (clearResume)
                 resumeState.clear();
+            rebalanceBuffers();
         }
 
         void resetToBlack() {
@@ -1110,12 +1488,36 @@ class BindManager {
 
             String loopInfo = liveMode ? "" : " loop=" + loop;
 
+            String bufferInfo = (liveMode || videoMode || !frames.isEmpty())
+                    ? " buffer=" + buffer.size() + "/" + buffer.limit()
+                            + (buffer.dropped() > 0 ? " dropped=" + buffer.dropped() : "")
+                            + " " + framePool.describe()
+                            + describeArena()
+                            + (codec != null ? " " + codec.describe() : "")
+                            + (memoryPressure.active() ? (pausedForMemory ? " mem=paused" : " mem=reduced") : "")
+                    : "";
+
+            long tilesTotal = tilesSent + tilesSkipped;
+            String skipInfo = tilesTotal > 0
+                    ? String.format(Locale.US, " skip=%.1f%% (%d/%d tiles, %d/%d frames unchanged)",
+                            100.0 * tilesSkipped / tilesTotal, tilesSkipped, tilesTotal,
+                            framesUnchanged, framesPublished)
+                    : "";
+
             return "binding=" + group.members.size() + " maps layout=" + group.cols + "x" + group.rows
                     + " frames=" + modeInfo
                     + tpfInfo
                     + loopInfo
                     + playback
+                    + bufferInfo
+                    + skipInfo
                     + " radius=" + maxDistance
+                    + " viewers=" + viewers.size()
+                    + (lod.enabled() ? (" lod=" + lod.describe() + " lodSkips=" + lodSkips) : "")
+                    + ((cullingEnabled && group.facing != null)
+                            ? (" facing=" + group.facing.name().toLowerCase(Locale.ROOT)
+                                    + " culled=" + culled.size() + " cullSkips=" + cullSkips)
+                            : "")
                     + (sourceLabel.isEmpty() ? "" : (" source=" + sourceLabel));
         }
 
@@ -1125,51 +1527,52 @@ class BindManager {
             int W = expectedWidth();
             byte black = MapPalette.matchColor(Color.BLACK);
 
-            byte[] linear = new byte[W * expectedHeight()];
-            Arrays.fill(linear, black);
+            byte[] tiles = new byte[W * expectedHeight()];
+            Arrays.fill(tiles, black);
 
-            publishFrame(linear);
+            publishFrame(toFrame(tiles));
         }
 
         private void resetRenderers() {
             for (Binding b : group.members) {
                 b.hasPendingFrame = false;
                 b.scheduledSendTick = -1L;
+                b.publishedValid = false;
                 b.renderer.clearStagedOnly();
                 b.renderer.resetSeen();
             }
+            lodSent.clear();
         }
 
         private void startPreloaderAsync() {
             stopPreloader();
-            preloadRunning = true;
+            resetArena();
+            DecodeRun run = new DecodeRun();
+            decodeRun = run;
+            List<DecodeExecutors.Task> previous = new ArrayList<>(stoppingTasks);
 
             if (liveMode && liveUrl != null) {
-                ffmpegTask = Bukkit.getScheduler().runTaskAsynchronously(plugin, this::runFfmpegLive);
+                decodeTask = startDecode("live", run, previous, () -> runFfmpegLive(run));
                 return;
             }
 
             if (videoMode && videoFile != null) {
-                ffmpegTask = Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                decodeTask = startDecode("video", run, previous, () -> {
                     try {
                         do {
-                            runFfmpegOnce();
-                        } while (preloadRunning && loop);
+                            runFfmpegOnce(run);
+                        } while (run.running && loop);
                     } finally {
-                        preloadRunning = false;
+                        run.running = false;
                     }
                 });
                 return;
             }
 
-            preloadTask = Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            decodeTask = startDecode("preload", run, previous, () -> {
                 try {
                     int idx = frameIndex;
-                    while (preloadRunning) {
-                        if (buffer.size() >= effectiveBufferTarget()) {
-                            sleepSilently(5);
-                            continue;
-                        }
+                    while (buffer.awaitSpace(() -> run.running)) {
                         List<File> snap = this.frames;
                         if (snap == null || snap.isEmpty())
                             break;
@@ -1180,43 +1583,68 @@ class BindManager {
                                 break;
                         }
                         File f = snap.get(idx);
+                        PaletteFrame frame = framePool.acquire();
                         try {
-                            byte[] linear = frameSourceLoader.readFrameLinear(f, expectedWidth(), expectedHeight(),
-                                    lut);
-                            buffer.offer(linear);
+                            decoders.compute(() -> frameSourceLoader.readFrameTiles(
+                                    f, expectedWidth(), expectedHeight(), lut, frame.pixels));
+                            enqueue(run, toQueued(frame.rehash()), false);
                         } catch (IOException e) {
-                            plugin.getLogger().warning("preload failed: " + f.getName() + " -> " + e.getMessage());
+                            framePool.release(frame);
+                            if (run.running)
+                                plugin.getLogger().warning("preload failed: " + f.getName() + " -> " + e.getMessage());
                         }
                         idx++;
                     }
                 } finally {
-                    preloadRunning = false;
+                    run.running = false;
                 }
             });
         }
 
+        // 新流水线先在自己的 io 线程上等旧的退出（合计最多 decode.stop-timeout-ms），再开始用池和缓冲；
+        // 主线程不等。等待期间又被停掉的话直接结束
+        private DecodeExecutors.Task startDecode(String kind, DecodeRun run, List<DecodeExecutors.Task> previous,
+                                                 Runnable body) {
+            return decoders.start("screen " + id + " " + kind, () -> {
+                long deadline = System.nanoTime() + decodeStopTimeoutMillis * 1_000_000L;
+                for (DecodeExecutors.Task old : previous) {
+                    long left = Math.max(0L, (deadline - System.nanoTime()) / 1_000_000L);
+                    if (!old.await(left) && run.running) {
+                        plugin.getLogger().warning("[mplay] screen " + id + " previous decoder did not stop within "
+                                + decodeStopTimeoutMillis + " ms");
+                        break;
+                    }
+                }
+                if (run.running)
+                    body.run();
+            });
+        }
+
+        // 主线程上调用，不等旧任务退出：停标记、杀 ffmpeg（阻塞在管道上的 read 会立刻返回）、打断解码线程。
+        // 旧任务之后只看自己那份 DecodeRun，入队前发现已停就把帧回收；arena 的 close 与 store 互斥，
+        // 调用方随后换掉 arena 也不会和它冲突。有上限的等待放在下一条流水线开工前（startDecode）和 stop() 里
         private void stopPreloader() {
-            preloadRunning = false;
-            if (preloadTask != null) {
-                try {
-                    preloadTask.cancel();
-                } catch (Throwable ignore) {
+            DecodeRun run = decodeRun;
+            decodeRun = null;
+            if (run != null) {
+                synchronized (run) {
+                    run.running = false;
                 }
-                preloadTask = null;
-            }
-            if (ffmpegTask != null) {
-                try {
-                    ffmpegTask.cancel();
-                } catch (Throwable ignore) {
+                Process proc = run.proc;
+                if (proc != null) {
+                    try {
+                        proc.destroyForcibly();
+                    } catch (Throwable ignore) {
+                    }
                 }
-                ffmpegTask = null;
             }
-            if (ffmpegProc != null) {
-                try {
-                    ffmpegProc.destroyForcibly();
-                } catch (Throwable ignore) {
-                }
-                ffmpegProc = null;
+            buffer.wakeProducer();
+            DecodeExecutors.Task task = decodeTask;
+            decodeTask = null;
+            stoppingTasks.removeIf(DecodeExecutors.Task::isDone);
+            if (task != null) {
+                task.cancel();
+                stoppingTasks.add(task);
             }
             if (progressTask != null) {
                 try {
@@ -1227,7 +1655,29 @@ class BindManager {
             }
         }
 
-        private void runFfmpegOnce() {
+        private boolean isDecoding() {
+            DecodeRun run = decodeRun;
+            return run != null && run.running;
+        }
+
+        // 解码线程：放入环形缓冲。和 stopPreloader 用同一把锁，停掉之后的旧任务不会再往缓冲里写
+        // （FrameRing 只允许一个生产者），手上的帧直接回收
+        private void enqueue(DecodeRun run, PaletteFrame queued, boolean dropOldest) {
+            if (queued == null)
+                return;
+            synchronized (run) {
+                if (run.running) {
+                    if (dropOldest)
+                        buffer.offerDropOldest(queued);
+                    else
+                        buffer.offer(queued);
+                    return;
+                }
+            }
+            recycleFrame(queued);
+        }
+
+        private void runFfmpegOnce(DecodeRun run) {
             final int W = expectedWidth();
             final int H = expectedHeight();
             final int RGB_BYTES = W * H * 3;
@@ -1243,20 +1693,21 @@ class BindManager {
 
             ProcessBuilder pb = new ProcessBuilder(cmd);
             pb.redirectErrorStream(true);
+            final Process proc;
             try {
-                ffmpegProc = pb.start();
+                proc = pb.start();
             } catch (IOException e) {
                 plugin.getLogger().severe("[mplay] screen " + id + " ffmpeg launch failed: " + e.getMessage());
                 return;
             }
+            run.proc = proc;
+            // 启动期间被停掉时 stopPreloader 看不到这个进程
+            if (!run.running)
+                proc.destroyForcibly();
 
-            try (InputStream in = new BufferedInputStream(ffmpegProc.getInputStream(), RGB_BYTES * 2)) {
+            try (InputStream in = new BufferedInputStream(proc.getInputStream(), RGB_BYTES * 2)) {
                 byte[] rgb = new byte[RGB_BYTES];
-                while (preloadRunning) {
-                    if (buffer.size() >= effectiveBufferTarget()) {
-                        sleepSilently(5);
-                        continue;
-                    }
+                while (buffer.awaitSpace(() -> run.running)) {
                     int off = 0, n;
                     while (off < RGB_BYTES && (n = in.read(rgb, off, RGB_BYTES - off)) > 0)
                         off += n;
@@ -1265,26 +1716,35 @@ class BindManager {
                         break;
                     }
                     dumpRawFrameOnce(rgb, RGB_BYTES, false);
-                    byte[] linear = frameSourceLoader.rgb24ToPalette(rgb, W, H, lut);
-                    buffer.offer(linear);
+                    PaletteFrame frame = framePool.acquire();
+                    try {
+                        decoders.compute(() -> quantizeRgb(rgb, W, H, frame.pixels));
+                    } catch (IOException e) {
+                        framePool.release(frame);
+                        throw e;
+                    }
+                    enqueue(run, toQueued(frame.rehash()), false);
                 }
             } catch (IOException io) {
-                plugin.getLogger().warning("[mplay] screen " + id + " ffmpeg read error: " + io.getMessage());
+                if (run.running)
+                    plugin.getLogger().warning("[mplay] screen " + id + " ffmpeg read error: " + io.getMessage());
             } finally {
                 try {
-                    if (ffmpegProc != null)
-                        ffmpegProc.destroy();
+                    proc.destroy();
                 } catch (Throwable ignore) {
                 }
-                ffmpegProc = null;
+                if (run.proc == proc)
+                    run.proc = null;
             }
         }
 
-        private void runFfmpegLive() {
+        private void runFfmpegLive(DecodeRun run) {
             final int W = expectedWidth();
             final int H = expectedHeight();
             final int RGB_BYTES = W * H * 3;
-            while (preloadRunning) {
+            // 整个直播期间复用同一块 RGB 暂存（转换是同步的，转完就能覆盖）
+            final byte[] rgb = new byte[RGB_BYTES];
+            while (run.running) {
                 List<String> cmd = new ArrayList<>();
                 // escalate probing after a couple attempts
                 int analyzed = (this.liveConnectAttempts >= 2) ? 1000000 : 200000;
@@ -1310,8 +1770,9 @@ class BindManager {
 
                 ProcessBuilder pb = new ProcessBuilder(cmd);
                 pb.redirectErrorStream(false);
+                final Process proc;
                 try {
-                    ffmpegProc = pb.start();
+                    proc = pb.start();
                 } catch (IOException e) {
                     plugin.getLogger().warning(
                             "[mplay] screen " + id + " live ffmpeg launch failed: " + e.getMessage());
@@ -1321,25 +1782,23 @@ class BindManager {
                     continue;
                 }
 
+                run.proc = proc;
+                if (!run.running)
+                    proc.destroyForcibly();
+
                 // drain stderr asynchronously to avoid blocking if ffmpeg logs
-                final Process procForErr = ffmpegProc;
-                Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-                    try (InputStream es = procForErr.getErrorStream()) {
+                DecodeExecutors.Task errDrain = decoders.start("screen " + id + " ffmpeg stderr", () -> {
+                    try (InputStream es = proc.getErrorStream()) {
                         byte[] buf = new byte[1024];
-                        while (preloadRunning && es.read(buf) != -1) {
+                        while (run.running && es.read(buf) != -1) {
                             // ignore content; loglevel=error already minimizes noise
                         }
                     } catch (IOException ignore) {
                     }
                 });
 
-                try (InputStream in = new BufferedInputStream(ffmpegProc.getInputStream(), 1 << 20)) {
-                    while (preloadRunning) {
-                        if (buffer.size() >= effectiveBufferTarget()) {
-                            sleepSilently(5);
-                            continue;
-                        }
-                        byte[] rgb = new byte[RGB_BYTES];
+                try (InputStream in = new BufferedInputStream(proc.getInputStream(), 1 << 20)) {
+                    while (run.running) {
                         if (!PpmReader.readOnePPMFrame(in, W, H, rgb)) {
                             if (!firstFrameAnnounced && liveStarter != null)
                                 sendFeedback(liveStarter, "[mplay] live: waiting for first frame (reconnecting if needed)...");
@@ -1356,28 +1815,36 @@ class BindManager {
                             }
                         }
                         dumpRawFrameOnce(rgb, RGB_BYTES, true);
-                        byte[] linear = frameSourceLoader.rgb24ToPalette(rgb, W, H, lut);
-                        buffer.offer(linear);
-                        if (liveMode && liveQueueLimit > 0) {
-                            while (buffer.size() > liveQueueLimit)
-                                buffer.poll();
+                        PaletteFrame frame = framePool.acquire();
+                        try {
+                            decoders.compute(() -> quantizeRgb(rgb, W, H, frame.pixels));
+                        } catch (IOException e) {
+                            framePool.release(frame);
+                            throw e;
                         }
+                        // 直播不等主线程：队列满了丢最旧的帧
+                        enqueue(run, toQueued(frame.rehash()), true);
                     }
                 } catch (IOException io) {
-                    plugin.getLogger().warning(
-                            "[mplay] screen " + id + " live read error: " + io.getMessage());
-                    if (liveStarter != null)
-                        sendFeedback(liveStarter, "[mplay] live error: " + io.getMessage());
+                    if (run.running) {
+                        plugin.getLogger().warning(
+                                "[mplay] screen " + id + " live read error: " + io.getMessage());
+                        if (liveStarter != null)
+                            sendFeedback(liveStarter, "[mplay] live error: " + io.getMessage());
+                    }
                 } finally {
                     try {
-                        if (ffmpegProc != null)
-                            ffmpegProc.destroy();
+                        proc.destroy();
                     } catch (Throwable ignore) {
                     }
-                    ffmpegProc = null;
+                    if (run.proc == proc)
+                        run.proc = null;
+                    // 进程结束后 stderr 很快读到 EOF；每次重连都收掉上一轮的排空线程
+                    errDrain.cancel();
+                    errDrain.await(200L);
                 }
 
-                if (!preloadRunning)
+                if (!run.running)
                     break;
                 sleepSilently(1000);
             }
@@ -1419,6 +1886,15 @@ class BindManager {
                     expected));
         }
 
+        // ffmpeg 的 rgb24 帧 -> 调色板；开了 dither.mode 时 Dither 自带它那张 LUT
+        private void quantizeRgb(byte[] rgb, int width, int height, byte[] out) throws IOException {
+            Dither d = dither;
+            if (d != null)
+                d.rgb24ToTiles(rgb, width, height, out);
+            else
+                frameSourceLoader.rgb24ToTiles(rgb, width, height, lut, out);
+        }
+
         private void dumpRawFrameOnce(byte[] rgb, int length, boolean live) {
             if (dumpedFirstFrame)
                 return;
@@ -1445,7 +1921,7 @@ class BindManager {
                 try { progressTask.cancel(); } catch (Throwable ignore) {}
             }
             progressTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-                if (!liveMode || !preloadRunning) {
+                if (!liveMode || !isDecoding()) {
                     try { progressTask.cancel(); } catch (Throwable ignore) {}
                     progressTask = null;
                     return;
@@ -1478,6 +1954,10 @@ class BindManager {
             }
         }
 
+        private PaletteFrame toFrame(byte[] tiles) {
+            return PaletteFrame.hashed(tiles, group.cols, group.rows);
+        }
+
         private boolean hasAnyPending() {
             for (Binding b : group.members)
                 if (b.hasPendingFrame)
@@ -1575,6 +2055,20 @@ class BindManager {
             return Math.min(base, MAX_BUFFER_FRAMES);
         }
 
+        // 预算按排队时每帧实际占用算：压缩模式用平均压缩后大小
+        long queuedFrameBytes() {
+            return codec != null ? Math.max(1L, codec.averagePackedBytes()) : expectedBytes();
+        }
+
+        boolean isBuffering() {
+            return liveMode || videoMode || !frames.isEmpty();
+        }
+
+        // 不考虑全局预算时这块屏幕想要的缓冲帧数
+        int requestedDepth() {
+            return liveMode ? liveQueueLimit : effectiveBufferTarget();
+        }
+
         private int effectiveBufferTarget() {
             int limit = bufferTarget > 0 ? bufferTarget : MAX_BUFFER_FRAMES;
             return Math.max(1, Math.min(limit, MAX_BUFFER_FRAMES));
@@ -1660,7 +2154,7 @@ class BindManager {
             return current;
         }
 
-        private byte[] bufferedImageToPalette(BufferedImage img, byte[] lut) {
+        private byte[] bufferedImageToPalette(BufferedImage img, ColorLut lut) {
             int width = img.getWidth();
             int height = img.getHeight();
             int[] argb = img.getRGB(0, 0, width, height, null, 0, width);
@@ -1672,25 +2166,29 @@ class BindManager {
                 rgb[idx++] = (byte) (pixel & 0xFF);
             }
             try {
-                return frameSourceLoader.rgb24ToPalette(rgb, width, height, lut);
+                return frameSourceLoader.rgb24ToTiles(rgb, width, height, lut);
             } catch (IOException e) {
-                throw new RuntimeException("rgb24ToPalette failed", e);
+                throw new RuntimeException("rgb24ToTiles failed", e);
             }
         }
 
-        private boolean inRange(Player p) {
-            if (p.getWorld() != group.members.get(0).world)
-                return false;
-            if (this.maxDistance <= 0)
-                return true;
-
-            Location lp = p.getLocation();
-            Location center = group.center != null ? group.center : p.getWorld().getSpawnLocation();
-
-            double dx = lp.getX() - center.getX();
-            double dy = lp.getY() - center.getY();
-            double dz = lp.getZ() - center.getZ();
-            return (dx * dx + dy * dy + dz * dz) <= (double) maxDistance * (double) maxDistance;
+        // 每 tick 重算一次范围内玩家；新进入的立即整屏补发，离开的清掉逐玩家状态
+        private void updateViewers() {
+            World w = group.members.get(0).world;
+            Location c = group.center != null ? group.center : w.getSpawnLocation();
+            playerManager.collectNearby(w, c.getX(), c.getY(), c.getZ(), maxDistance, nearby);
+            viewers.update(nearby, c.getX(), c.getY(), c.getZ());
+            nearby.clear();
+            // 内存压力下有人走近暂停的屏幕（或最后一个人离开）时重新分配
+            if (memoryPressure.active() && isBuffering() && pausedForMemory != (viewers.size() == 0))
+                rebalanceBuffers();
+
+            for (UUID id : viewers.left())
+                forgetViewer(id);
+            for (Player p : viewers.entered()) {
+                if (updateCulling(p, viewers.distSqOf(p.getUniqueId())))
+                    forceRefresh(p);
+            }
         }
 
         private int expectedWidth() {
@@ -1701,7 +2199,7 @@ class BindManager {
             return group.rows * 128;
         }
 
-        private int expectedBytes() {
+        int expectedBytes() {
             return expectedWidth() * expectedHeight();
         }
 
@@ -1710,16 +2208,74 @@ class BindManager {
                 return;
             if (group.members.isEmpty())
                 return;
-            if (!inRange(player))
+            if (viewers.distSqOf(player.getUniqueId()) < 0)
                 return;
 
+            forceRefresh(player);
+        }
+
+        private void forceRefresh(Player player) {
             UUID uuid = player.getUniqueId();
             for (Binding binding : group.members) {
                 binding.renderer.dropSeen(uuid);
-                player.sendMap(binding.view);
+                sendScheduler.enqueue(player, binding.view, 0.0, 1.0, MapFramePlayer.TICK);
+            }
+            lodSent.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), group.epochCounter);
+        }
+
+        // 返回 true 表示该玩家能看到屏幕；从看不到变成看得到时立即补发整屏
+        private boolean updateCulling(Player p, double distSq) {
+            if (!cullingEnabled || group.facing == null || group.center == null)
+                return true;
+            boolean visible = facesScreen(p, distSq);
+            UUID id = p.getUniqueId();
+            if (!visible) {
+                culled.add(id);
+                return false;
+            }
+            if (culled.remove(id)) {
+                forceRefresh(p);
+                return false; // 已经整屏补发，不用再发本帧的增量
+            }
+            return true;
+        }
+
+        private void recheckCulled() {
+            for (UUID id : new ArrayList<>(culled)) {
+                Player p = Bukkit.getPlayer(id);
+                double distSq = viewers.distSqOf(id);
+                if (distSq < 0) {
+                    culled.remove(id);
+                    continue;
+                }
+                updateCulling(p, distSq);
             }
         }
 
+        private boolean facesScreen(Player p, double distSq) {
+            Location eye = p.getEyeLocation();
+            Location c = group.center;
+            double vx = eye.getX() - c.getX();
+            double vy = eye.getY() - c.getY();
+            double vz = eye.getZ() - c.getZ();
+            // 在屏幕平面背后（留半格余量给挂画框的那层方块）
+            double side = vx * group.facing.getModX() + vy * group.facing.getModY() + vz * group.facing.getModZ();
+            if (side < -0.5)
+                return false;
+
+            double dist = Math.sqrt(vx * vx + vy * vy + vz * vz);
+            double halfDiag = 0.5 * Math.sqrt((double) group.cols * group.cols + (double) group.rows * group.rows);
+            if (dist <= halfDiag)
+                return true;
+
+            // 视线与"眼睛->屏幕中心"的夹角，减去屏幕本身的张角一半后仍超过视锥就算看不到
+            Vector dir = eye.getDirection();
+            double cos = -(dir.getX() * vx + dir.getY() * vy + dir.getZ() * vz) / dist;
+            double angle = Math.acos(Math.max(-1.0, Math.min(1.0, cos)));
+            double slack = Math.atan(halfDiag / dist);
+            return Math.cos(Math.max(0.0, angle - slack)) >= cullingConeCos;
+        }
+
         void forgetViewer(UUID playerId) {
             if (playerId == null)
                 return;
@@ -1728,27 +2284,8 @@ class BindManager {
             for (Binding binding : group.members) {
                 binding.renderer.dropSeen(playerId);
             }
-        }
-
-        private byte[] sliceTile(byte[] src, int bigW, int tileRow, int tileCol, boolean flipX) {
-            byte[] out = new byte[128 * 128];
-            int srcX0 = tileCol * 128;
-            int srcY0 = tileRow * 128;
-            if (!flipX) {
-                for (int y = 0; y < 128; y++) {
-                    int srcOff = (srcY0 + y) * bigW + srcX0;
-                    System.arraycopy(src, srcOff, out, y * 128, 128);
-                }
-            } else {
-                for (int y = 0; y < 128; y++) {
-                    int srcOff = (srcY0 + y) * bigW + srcX0;
-                    int dstOff = y * 128;
-                    for (int x = 0; x < 128; x++) {
-                        out[dstOff + x] = src[srcOff + (127 - x)];
-                    }
-                }
-            }
-            return out;
+            lodSent.remove(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+            culled.remove(playerId);
         }
     }
 }
@@ -12,6 +12,9 @@ class Binding {
     long scheduledSendTick = -1L;
     boolean hasPendingFrame = false;
 
+    long publishedHash = 0L;
+    boolean publishedValid = false;
+
     Binding(int id, World w, MapView v, DataRenderer r) {
         this.mapId = id;
         this.world = w;
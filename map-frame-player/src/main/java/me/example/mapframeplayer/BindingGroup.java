@@ -1,6 +1,7 @@
 package me.example.mapframeplayer;
 
 import org.bukkit.Location;
+import org.bukkit.block.BlockFace;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -14,6 +15,8 @@ class BindingGroup {
     List<Binding> members = new ArrayList<>();
     long epochCounter = 0L;
     Location center;
+    // 画面朝向（屏幕法线指向观众一侧）；/mplay set 绑定的现有地图不知道朝向，为 null
+    BlockFace facing;
     List<Location> placedBarriers = new ArrayList<>();
     List<UUID> frameUUIDs = new ArrayList<>();
     List<Location> frameLocations = new ArrayList<>();
@@ -0,0 +1,69 @@
+package me.example.mapframeplayer;
+
+// 全局缓冲预算（buffer.max-total-mb）在正在播放的屏幕之间按字节分配。
+// 权重 = 单帧字节数 x 模式系数：大屏按面积多分字节，直播只要很浅的低延迟队列（1），文件/视频播放多预读（4）。
+// 所以同一模式的屏幕分到的帧数（缓冲的时长）相同，字节随屏幕大小走。
+// 某屏幕自己要的帧数用不完分到的份额时，多出来的再分给其他屏幕（注水法）。
+final class BufferBudget {
+    static final int LIVE_WEIGHT = 1;
+    static final int PLAYBACK_WEIGHT = 4;
+    // 再紧也至少留两帧，否则播放端一直等不到帧
+    static final int MIN_FRAMES = 2;
+
+    private BufferBudget() {
+    }
+
+    // 返回每个屏幕的帧数上限；budgetBytes <= 0 表示不限，直接用 requested
+    static int[] allocate(long budgetBytes, long[] frameBytes, int[] requested, boolean[] live) {
+        int n = requested.length;
+        int[] out = new int[n];
+        if (budgetBytes <= 0) {
+            for (int i = 0; i < n; i++)
+                out[i] = Math.max(1, requested[i]);
+            return out;
+        }
+
+        boolean[] settled = new boolean[n];
+        long remaining = budgetBytes;
+        while (true) {
+            double totalWeight = 0;
+            for (int i = 0; i < n; i++) {
+                if (!settled[i])
+                    totalWeight += weight(frameBytes[i], live[i]);
+            }
+            if (totalWeight == 0)
+                break;
+            // 本轮所有份额都按轮初的 remaining 算，结果与屏幕顺序无关；
+            // 份额够满足自己请求的先定下来，省下的留到下一轮重新分
+            double perWeight = (double) remaining / totalWeight;
+            long used = 0;
+            boolean progress = false;
+            for (int i = 0; i < n; i++) {
+                if (settled[i])
+                    continue;
+                if ((double) requested[i] * frameBytes[i] <= perWeight * weight(frameBytes[i], live[i])) {
+                    out[i] = Math.max(1, requested[i]);
+                    settled[i] = true;
+                    used += (long) out[i] * frameBytes[i];
+                    progress = true;
+                }
+            }
+            if (progress) {
+                remaining -= used;
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                if (settled[i])
+                    continue;
+                int frames = (int) (perWeight * weight(frameBytes[i], live[i]) / frameBytes[i]);
+                out[i] = Math.min(Math.max(1, requested[i]), Math.max(MIN_FRAMES, frames));
+            }
+            break;
+        }
+        return out;
+    }
+
+    private static double weight(long frameBytes, boolean live) {
+        return (double) Math.max(1L, frameBytes) * (live ? LIVE_WEIGHT : PLAYBACK_WEIGHT);
+    }
+}
@@ -0,0 +1,87 @@
+package me.example.mapframeplayer;
+
+import org.bukkit.map.MapCanvas;
+
+import java.lang.reflect.Field;
+
+// 快路径依赖 CraftMapCanvas 的两点行为（按 CraftBukkit 1.20.1 写的，即 pom 里的目标版本；其他版本没核对过）：
+//   1. 像素存在私有字段 byte[] buffer（128*128 行优先），CraftMapView.render 每次把整个 buffer 拷出去
+//   2. setPixel 只在颜色变化时写入并通知 WorldMap 扩大脏区域，脏区域是所有改动点的包围盒
+// 字段不存在/类型不对时自动退回 setPixel 循环；CanvasWriterTest 用按这两点写的假画布固定住这个约定。
+// 换服务端版本后如果地图只刷新了两个角，用 render.bulk-canvas-write: false 关掉快路径。
+class CanvasWriter {
+    // CraftMapCanvas 内部的 byte[128*128] buffer；找不到就退回 setPixel 循环
+    private static final ClassValue<Field> BUFFER_FIELD = new ClassValue<>() {
+        @Override
+        protected Field computeValue(Class<?> type) {
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                try {
+                    Field f = c.getDeclaredField("buffer");
+                    if (f.getType() != byte[].class)
+                        return null;
+                    f.setAccessible(true);
+                    return f;
+                } catch (NoSuchFieldException ignore) {
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    };
+
+    private static volatile boolean bulkEnabled = true;
+
+    static void setBulkEnabled(boolean enabled) {
+        bulkEnabled = enabled;
+    }
+
+    // 把 src 从 srcOff 开始的 128x128 块中 [x0..x1]x[y0..y1]（含边界）写进画布；空矩形直接返回
+    static void write(MapCanvas canvas, byte[] src, int srcOff, int x0, int y0, int x1, int y1) {
+        if (x1 < x0 || y1 < y0)
+            return;
+        byte[] buf = bulkEnabled ? canvasBuffer(canvas) : null;
+        if (buf == null) {
+            writePixels(canvas, src, srcOff, x0, y0, x1, y1);
+            return;
+        }
+
+        int width = x1 - x0 + 1;
+        for (int y = y0; y <= y1; y++) {
+            int off = y * 128 + x0;
+            System.arraycopy(src, srcOff + off, buf, off, width);
+        }
+        // setPixel 只在颜色变化时标脏：先把两个角改成别的值，再用 setPixel 写回，
+        // 服务器的脏区域就会覆盖整个矩形
+        markDirty(canvas, buf, src, srcOff, x0, y0);
+        markDirty(canvas, buf, src, srcOff, x1, y1);
+    }
+
+    static void writePixels(MapCanvas canvas, byte[] src, int srcOff, int x0, int y0, int x1, int y1) {
+        for (int y = y0; y <= y1; y++) {
+            int rowOff = srcOff + y * 128;
+            for (int x = x0; x <= x1; x++) {
+                canvas.setPixel(x, y, src[rowOff + x]);
+            }
+        }
+    }
+
+    private static void markDirty(MapCanvas canvas, byte[] buf, byte[] src, int srcOff, int x, int y) {
+        int i = y * 128 + x;
+        byte v = src[srcOff + i];
+        buf[i] = (byte) (v ^ 1);
+        canvas.setPixel(x, y, v);
+    }
+
+    private static byte[] canvasBuffer(MapCanvas canvas) {
+        Field f = BUFFER_FIELD.get(canvas.getClass());
+        if (f == null)
+            return null;
+        try {
+            byte[] buf = (byte[]) f.get(canvas);
+            return (buf != null && buf.length == 128 * 128) ? buf : null;
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+}
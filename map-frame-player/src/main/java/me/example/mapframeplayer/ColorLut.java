@@ -0,0 +1,322 @@
+package me.example.mapframeplayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+// RGB -> 地图调色板索引的查表。
+//   full    - 原始 colormap.lut，16 MB，只读 mmap（不占堆，页缓存里所有量化线程共用），
+//             每像素一次随机读，多屏同时量化时把 L2/L3 挤爆
+//   compact - 每通道只取高 5/6 位（32 KB / 256 KB），能留在缓存里；
+//             格子内完整 LUT 不止一个结果的"边界格"可以记下候选索引，查表时按 OKLab 距离在候选里精确挑
+// 批量接口 rgb24()/argb() 每次转一段（通常是一块的一行 128 像素），避免每像素一次虚调用。
+abstract class ColorLut {
+    static final int FULL_SIZE = 1 << 24;
+
+    abstract byte lookup(int rgb);
+
+    // src 从 srcOff 开始的 n 个 rgb24 像素 -> out[dstOff ..]
+    abstract void rgb24(byte[] src, int srcOff, byte[] out, int dstOff, int n);
+
+    abstract void argb(int[] src, int srcOff, byte[] out, int dstOff, int n);
+
+    abstract long sizeBytes();
+
+    abstract String describe();
+
+    // 文件映射进来后通道即可关闭，映射一直有效直到 buffer 被回收。
+    // 映射期间文件不能被原地改写/截断（会读到新内容或 SIGBUS），更新 LUT 请写临时文件再改名
+    static ColorLut map(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (ch.size() != FULL_SIZE)
+                throw new IOException("LUT size invalid: " + ch.size() + " (expect " + FULL_SIZE + " bytes)");
+            return new Full(ch.map(FileChannel.MapMode.READ_ONLY, 0, FULL_SIZE), file.getName());
+        }
+    }
+
+    // bits = 5 或 6；paletteRgb 为 null 时不做边界精修（索引 -> 0xRRGGBB，没有的颜色填 -1）
+    static ColorLut compact(ColorLut full, int bits, int[] paletteRgb) {
+        if (bits < 4 || bits > 7)
+            throw new IllegalArgumentException("compact LUT bits must be 4..7: " + bits);
+        return new Compact(full, bits, paletteRgb);
+    }
+
+    private static final class Full extends ColorLut {
+        // 只用绝对位置的 get，多线程共用同一个 buffer 没问题
+        private final MappedByteBuffer table;
+        private final String name;
+
+        Full(MappedByteBuffer table, String name) {
+            this.table = table;
+            this.name = name;
+        }
+
+        @Override
+        byte lookup(int rgb) {
+            return table.get(rgb & 0xFFFFFF);
+        }
+
+        @Override
+        void rgb24(byte[] src, int srcOff, byte[] out, int dstOff, int n) {
+            int p = srcOff;
+            for (int i = 0; i < n; i++) {
+                int key = ((src[p] & 0xFF) << 16) | ((src[p + 1] & 0xFF) << 8) | (src[p + 2] & 0xFF);
+                out[dstOff + i] = table.get(key);
+                p += 3;
+            }
+        }
+
+        @Override
+        void argb(int[] src, int srcOff, byte[] out, int dstOff, int n) {
+            for (int i = 0; i < n; i++)
+                out[dstOff + i] = table.get(src[srcOff + i] & 0xFFFFFF);
+        }
+
+        @Override
+        long sizeBytes() {
+            return FULL_SIZE;
+        }
+
+        @Override
+        String describe() {
+            return "full 16 MB mapped from " + name;
+        }
+    }
+
+    private static final class Compact extends ColorLut {
+        // 边界格最多记这么多候选；更多的（极少）只保留前几个，结果就不再保证和完整 LUT 一致
+        private static final int MAX_CANDIDATES = 4;
+
+        private final int bits;
+        private final int shift;
+        private final int mask;
+        // 格子 -> 格子中心在完整 LUT 里的结果
+        private final byte[] table;
+        // 边界格位图 + 每个 long 之前的边界格数（rank），用来在 candidates 里定位
+        private final long[] boundary;
+        private final int[] rank;
+        private final byte[] candidates;
+        private final int boundaryCells;
+        // 调色板的 OKLab，索引 * 3
+        private final float[] paletteLab;
+
+        Compact(ColorLut full, int bits, int[] paletteRgb) {
+            this.bits = bits;
+            this.shift = 8 - bits;
+            this.mask = (1 << bits) - 1;
+            int cells = 1 << (3 * bits);
+            this.table = new byte[cells];
+            int half = 1 << shift >> 1;
+            for (int r = 0; r <= mask; r++) {
+                for (int g = 0; g <= mask; g++) {
+                    for (int b = 0; b <= mask; b++) {
+                        int key = (((r << shift) + half) << 16) | (((g << shift) + half) << 8) | ((b << shift) + half);
+                        table[cell(r, g, b)] = full.lookup(key);
+                    }
+                }
+            }
+
+            if (paletteRgb == null) {
+                boundary = null;
+                rank = null;
+                candidates = null;
+                paletteLab = null;
+                boundaryCells = 0;
+                return;
+            }
+
+            // 扫一遍完整 LUT，收集每格出现过的不同结果
+            byte[] found = new byte[cells * MAX_CANDIDATES];
+            byte[] count = new byte[cells];
+            for (int key = 0; key < FULL_SIZE; key++) {
+                int c = cell((key >>> 16) >>> shift, ((key >>> 8) & 0xFF) >>> shift, (key & 0xFF) >>> shift);
+                byte v = full.lookup(key);
+                int n = count[c];
+                int base = c * MAX_CANDIDATES;
+                boolean seen = false;
+                for (int i = 0; i < n; i++) {
+                    if (found[base + i] == v) {
+                        seen = true;
+                        break;
+                    }
+                }
+                if (!seen && n < MAX_CANDIDATES) {
+                    found[base + n] = v;
+                    count[c] = (byte) (n + 1);
+                }
+            }
+
+            this.boundary = new long[(cells + 63) >>> 6];
+            this.rank = new int[boundary.length];
+            int total = 0;
+            for (int c = 0; c < cells; c++) {
+                if (count[c] > 1) {
+                    boundary[c >>> 6] |= 1L << (c & 63);
+                    total++;
+                }
+            }
+            for (int w = 0, acc = 0; w < boundary.length; w++) {
+                rank[w] = acc;
+                acc += Long.bitCount(boundary[w]);
+            }
+            this.boundaryCells = total;
+            this.candidates = new byte[total * MAX_CANDIDATES];
+            int slot = 0;
+            for (int c = 0; c < cells; c++) {
+                if (count[c] <= 1)
+                    continue;
+                int base = c * MAX_CANDIDATES;
+                for (int i = 0; i < MAX_CANDIDATES; i++)
+                    candidates[slot * MAX_CANDIDATES + i] = found[base + Math.min(i, count[c] - 1)];
+                slot++;
+            }
+
+            this.paletteLab = new float[256 * 3];
+            for (int i = 0; i < 256; i++) {
+                int rgb = i < paletteRgb.length ? paletteRgb[i] : -1;
+                if (rgb < 0)
+                    continue;
+                Oklab.fromRgb(rgb, paletteLab, i * 3);
+            }
+        }
+
+        private int cell(int r, int g, int b) {
+            return (r << (2 * bits)) | (g << bits) | b;
+        }
+
+        @Override
+        byte lookup(int rgb) {
+            int r = (rgb >>> 16) & 0xFF;
+            int g = (rgb >>> 8) & 0xFF;
+            int b = rgb & 0xFF;
+            return resolve(cell(r >>> shift, g >>> shift, b >>> shift), r, g, b);
+        }
+
+        private byte resolve(int c, int r, int g, int b) {
+            if (boundary == null)
+                return table[c];
+            long word = boundary[c >>> 6];
+            long bit = 1L << (c & 63);
+            if ((word & bit) == 0)
+                return table[c];
+            int slot = rank[c >>> 6] + Long.bitCount(word & (bit - 1));
+            return nearest(slot * MAX_CANDIDATES, r, g, b);
+        }
+
+        // 候选里按 OKLab 距离挑最近的，和 prepare_colormap.py 生成完整 LUT 的规则一致
+        private byte nearest(int base, int r, int g, int b) {
+            float lr = Oklab.LINEAR[r];
+            float lg = Oklab.LINEAR[g];
+            float lb = Oklab.LINEAR[b];
+            float l = Oklab.cbrt(0.4122214708f * lr + 0.5363325363f * lg + 0.0514459929f * lb);
+            float m = Oklab.cbrt(0.2119034982f * lr + 0.6806995451f * lg + 0.1073969566f * lb);
+            float s = Oklab.cbrt(0.0883024619f * lr + 0.2817188376f * lg + 0.6299787005f * lb);
+            float labL = 0.2104542553f * l + 0.7936177850f * m - 0.0040720468f * s;
+            float labA = 1.9779984951f * l - 2.4285922050f * m + 0.4505937099f * s;
+            float labB = 0.0259040371f * l + 0.7827717662f * m - 0.8086757660f * s;
+            byte best = candidates[base];
+            float bestDist = Float.MAX_VALUE;
+            for (int i = 0; i < MAX_CANDIDATES; i++) {
+                byte idx = candidates[base + i];
+                int p = (idx & 0xFF) * 3;
+                float dl = labL - paletteLab[p];
+                float da = labA - paletteLab[p + 1];
+                float db = labB - paletteLab[p + 2];
+                float d = dl * dl + da * da + db * db;
+                if (d < bestDist) {
+                    bestDist = d;
+                    best = idx;
+                }
+            }
+            return best;
+        }
+
+        @Override
+        void rgb24(byte[] src, int srcOff, byte[] out, int dstOff, int n) {
+            int p = srcOff;
+            for (int i = 0; i < n; i++) {
+                int r = src[p] & 0xFF;
+                int g = src[p + 1] & 0xFF;
+                int b = src[p + 2] & 0xFF;
+                out[dstOff + i] = resolve(cell(r >>> shift, g >>> shift, b >>> shift), r, g, b);
+                p += 3;
+            }
+        }
+
+        @Override
+        void argb(int[] src, int srcOff, byte[] out, int dstOff, int n) {
+            for (int i = 0; i < n; i++)
+                out[dstOff + i] = lookup(src[srcOff + i]);
+        }
+
+        @Override
+        long sizeBytes() {
+            long n = table.length;
+            if (boundary != null)
+                n += boundary.length * 8L + rank.length * 4L + candidates.length + paletteLab.length * 4L;
+            return n;
+        }
+
+        @Override
+        String describe() {
+            if (boundary == null)
+                return String.format(Locale.US, "compact %d-bit %d KB", bits, sizeBytes() / 1024);
+            return String.format(Locale.US, "compact %d-bit %d KB, %.1f%% boundary cells refined",
+                    bits, sizeBytes() / 1024, boundaryCells * 100.0 / table.length);
+        }
+    }
+
+    // sRGB -> OKLab（https://bottosson.github.io/posts/oklab/），与 prepare_colormap.py 同一套系数
+    static final class Oklab {
+        static final float[] LINEAR = new float[256];
+
+        static {
+            for (int i = 0; i < 256; i++) {
+                double c = i / 255.0;
+                LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+            }
+        }
+
+        private Oklab() {
+        }
+
+        static void fromRgb(int rgb, float[] out, int off) {
+            float r = LINEAR[(rgb >>> 16) & 0xFF];
+            float g = LINEAR[(rgb >>> 8) & 0xFF];
+            float b = LINEAR[rgb & 0xFF];
+            float l = (float) Math.cbrt(0.4122214708f * r + 0.5363325363f * g + 0.0514459929f * b);
+            float m = (float) Math.cbrt(0.2119034982f * r + 0.6806995451f * g + 0.1073969566f * b);
+            float s = (float) Math.cbrt(0.0883024619f * r + 0.2817188376f * g + 0.6299787005f * b);
+            out[off] = 0.2104542553f * l + 0.7936177850f * m - 0.0040720468f * s;
+            out[off + 1] = 1.9779984951f * l - 2.4285922050f * m + 0.4505937099f * s;
+            out[off + 2] = 0.0259040371f * l + 0.7827717662f * m - 0.8086757660f * s;
+        }
+
+        // 热路径版本：快速立方根，结果按 SoA 写进 l/a/b 的第 i 项
+        static void fast(int rgb, float[] l, float[] a, float[] b, int i) {
+            float r = LINEAR[(rgb >>> 16) & 0xFF];
+            float g = LINEAR[(rgb >>> 8) & 0xFF];
+            float bl = LINEAR[rgb & 0xFF];
+            float lc = cbrt(0.4122214708f * r + 0.5363325363f * g + 0.0514459929f * bl);
+            float mc = cbrt(0.2119034982f * r + 0.6806995451f * g + 0.1073969566f * bl);
+            float sc = cbrt(0.0883024619f * r + 0.2817188376f * g + 0.6299787005f * bl);
+            l[i] = 0.2104542553f * lc + 0.7936177850f * mc - 0.0040720468f * sc;
+            a[i] = 1.9779984951f * lc - 2.4285922050f * mc + 0.4505937099f * sc;
+            b[i] = 0.0259040371f * lc + 0.7827717662f * mc - 0.8086757660f * sc;
+        }
+
+        // 热路径用的立方根：位运算估初值再做三次牛顿迭代，x >= 0 时相对误差 < 1e-7，比 Math.cbrt 快几倍
+        static float cbrt(float x) {
+            if (x <= 0f)
+                return 0f;
+            float y = Float.intBitsToFloat(Float.floatToRawIntBits(x) / 3 + 709921077);
+            y = y - (y * y * y - x) / (3f * y * y);
+            y = y - (y * y * y - x) / (3f * y * y);
+            y = y - (y * y * y - x) / (3f * y * y);
+            return y;
+        }
+    }
+}
@@ -1,105 +1,188 @@
 package me.example.mapframeplayer;
 
-import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.map.MapCanvas;
 import org.bukkit.map.MapRenderer;
 import org.bukkit.map.MapView;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 class DataRenderer extends MapRenderer {
-    private final byte[] current = new byte[128 * 128];
-    private long currentEpoch = 0L;
+    // 不可变帧：像素数组发布后不再修改，切换只靠一次 volatile 写。
+    // pixels 是整屏 tile-major 数组，本地图的 128x128 块从 offset 开始
+    private static final class Frame {
+        final byte[] pixels;
+        final int offset;
+        final long epoch;
+        final long previousEpoch;
+        // 上一帧 -> 本帧的脏矩形（含边界）；maxX < 0 表示没有像素变化
+        final int minX, minY, maxX, maxY;
+
+        Frame(byte[] pixels, int offset, long epoch, long previousEpoch, int minX, int minY, int maxX, int maxY) {
+            this.pixels = pixels;
+            this.offset = offset;
+            this.epoch = epoch;
+            this.previousEpoch = previousEpoch;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+    }
+
+    private volatile Frame current = new Frame(new byte[128 * 128], 0, 0L, -1L, 0, 0, 127, 127);
+    private final AtomicReference<Frame> staged = new AtomicReference<>();
 
-    private final byte[] staged = new byte[128 * 128];
-    private long stagedEpoch = 0L;
-    private boolean hasStaged = false;
+    // 以下只在主线程（render / publish / 玩家事件）访问
+    private final SeenEpochs seen = new SeenEpochs();
 
-    private final Map<UUID, Long> seen = new HashMap<>();
+    // 非 contextual 模式：所有玩家共用一块画布，只记录画布画到了哪个 epoch
+    private final boolean shared;
+    private long sharedEpoch = -1L;
 
-    private World rangeWorld;
-    private Location rangeCenter;
-    private int rangeMaxDist;
+    // 屏幕级的范围内玩家集合，由 ScreenSession 每 tick 更新；未挂到屏幕前为 null（不做范围过滤）
+    private ViewerSet viewers;
+    private volatile LodPolicy lod;
+    private BindingGroup group;
 
-    synchronized void setRange(World w, Location center, int maxDist) {
-        this.rangeWorld = w;
-        this.rangeCenter = (center == null ? null : center.clone());
-        this.rangeMaxDist = maxDist;
+    void attach(ViewerSet viewers, LodPolicy lod, BindingGroup group) {
+        this.viewers = viewers;
+        this.lod = (lod != null && lod.enabled()) ? lod : null;
+        this.group = group;
     }
 
-    DataRenderer() {
-        super(true);
+    long epoch() {
+        return current.epoch;
     }
 
-    // 播放线程：只把帧暂存，不增 epoch，不影响当前已展示帧
-    synchronized void stageFrame(byte[] pixels128) {
-        System.arraycopy(pixels128, 0, staged, 0, 128 * 128);
-        hasStaged = true;
+    DataRenderer(boolean contextual) {
+        super(contextual);
+        this.shared = !contextual;
     }
 
-    synchronized void setStagedEpoch(long epoch) {
-        this.stagedEpoch = epoch;
+    // 只把帧暂存，不影响当前已展示帧；pixels 从 offset 起的 128x128 块交给渲染器引用，之后不能再改
+    void stageFrame(byte[] pixels, int offset, long epoch) {
+        staged.set(new Frame(pixels, offset, epoch, -1L, 0, 0, 127, 127));
     }
 
     // 发布：原子切换到 staged（在同一 tick 内，组里全部调用）
-    synchronized void publishIfStaged() {
-        if (!hasStaged)
+    void publishIfStaged() {
+        Frame next = staged.getAndSet(null);
+        if (next == null)
+            return;
+        Frame prev = current;
+        current = withDirtyRect(next.pixels, next.offset, next.epoch, prev);
+    }
+
+    // 内容相同（哈希一致）的块：epoch 和脏矩形不变，只把引用换到新帧数组上，
+    // 这样旧帧数组不会因为某张一直没变的地图而一直留在内存里
+    void rebase(byte[] pixels, int offset) {
+        Frame f = current;
+        if (f.pixels == pixels)
             return;
-        System.arraycopy(staged, 0, current, 0, 128 * 128);
-        currentEpoch = stagedEpoch;
-        hasStaged = false;
-        seen.clear(); // 所有玩家需要重画
+        current = new Frame(pixels, offset, f.epoch, f.previousEpoch, f.minX, f.minY, f.maxX, f.maxY);
+    }
+
+    private static Frame withDirtyRect(byte[] next, int nextOff, long epoch, Frame prev) {
+        byte[] old = prev.pixels;
+        int oldOff = prev.offset;
+        int minX = 128, minY = 128, maxX = -1, maxY = -1;
+        for (int y = 0; y < 128; y++) {
+            int a = nextOff + y * 128;
+            int b = oldOff + y * 128;
+            int first = Arrays.mismatch(next, a, a + 128, old, b, b + 128);
+            if (first < 0)
+                continue;
+            int last = 127;
+            while (last > first && next[a + last] == old[b + last])
+                last--;
+            if (first < minX)
+                minX = first;
+            if (last > maxX)
+                maxX = last;
+            if (minY == 128)
+                minY = y;
+            maxY = y;
+        }
+        return new Frame(next, nextOff, epoch, prev.epoch, minX, minY, maxX, maxY);
+    }
+
+    // 当前帧相对上一帧变化的面积占比（脏矩形面积 / 整张）
+    double changedRatio() {
+        Frame f = current;
+        if (f.maxX < f.minX || f.maxY < f.minY)
+            return 0.0;
+        return ((f.maxX - f.minX + 1) * (f.maxY - f.minY + 1)) / (128.0 * 128.0);
     }
 
-    synchronized void clearStagedOnly() {
-        hasStaged = false;
-        stagedEpoch = 0L;
+    void clearStagedOnly() {
+        staged.set(null);
     }
 
-    synchronized void resetSeen() {
+    void resetSeen() {
         seen.clear();
+        sharedEpoch = -1L;
     }
 
-    synchronized void dropSeen(UUID playerId) {
+    void dropSeen(UUID playerId) {
         if (playerId != null)
-            seen.remove(playerId);
+            seen.remove(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
     }
 
     @Override
     public void render(MapView map, MapCanvas canvas, Player player) {
-        // —— 距离拦截：不在范围内就直接 return，不要更新 seen ——
-        if (rangeMaxDist > 0) {
-            if (player.getWorld() != rangeWorld)
-                return;
-            Location lp = player.getLocation();
-            double dx = lp.getX() - rangeCenter.getX();
-            double dy = lp.getY() - rangeCenter.getY();
-            double dz = lp.getZ() - rangeCenter.getZ();
-            if ((dx * dx + dy * dy + dz * dz) > (double) rangeMaxDist * (double) rangeMaxDist) {
-                return;
-            }
+        Frame f = current;
+        if (shared) {
+            renderShared(canvas, f);
+            return;
         }
 
-        long sv = seen.getOrDefault(player.getUniqueId(), -1L);
-        long epoch;
-        byte[] src;
-        synchronized (this) {
-            epoch = currentEpoch;
-            src = current;
+        UUID id = player.getUniqueId();
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+
+        // —— 范围拦截：不在屏幕的 viewer 集合里就直接 return，不要更新 seen ——
+        ViewerSet v = viewers;
+        LodPolicy l = lod;
+        double distSq = 0.0;
+        if (v != null) {
+            int slot = v.slotOf(msb, lsb);
+            if (slot < 0)
+                return;
+            // 被视锥剔除：和不在范围内一样不画也不记 seen，转回来时 forceRefresh 整屏补画
+            if (v.isCulled(id))
+                return;
+            distSq = v.distSq(slot);
         }
-        if (sv == epoch)
+        long sv = seen.get(msb, lsb);
+        if (sv == f.epoch)
             return;
-
-        for (int y = 0; y < 128; y++) {
-            int rowOff = y * 128;
-            for (int x = 0; x < 128; x++) {
-                canvas.setPixel(x, y, src[rowOff + x]);
-            }
+        // 远处玩家：距上次画过不足 N 帧就先不画
+        if (l != null && sv >= 0) {
+            int n = l.divisor(distSq);
+            if (n > 1 && group.epochCounter - sv < n)
+                return;
         }
-        seen.put(player.getUniqueId(), epoch);
+
+        // 玩家画布停在上一帧：只需要重画脏矩形；否则整张重画。
+        // 省的只是画布拷贝：MapSendScheduler 走 Player#sendMap，每次都发整张 128x128，字节数不变
+        if (sv == f.previousEpoch)
+            CanvasWriter.write(canvas, f.pixels, f.offset, f.minX, f.minY, f.maxX, f.maxY);
+        else
+            CanvasWriter.write(canvas, f.pixels, f.offset, 0, 0, 127, 127);
+        seen.put(msb, lsb, f.epoch);
+    }
+
+    // 共享画布：每个 epoch 只画一次，范围过滤交给发包方
+    private void renderShared(MapCanvas canvas, Frame f) {
+        if (sharedEpoch == f.epoch)
+            return;
+        if (sharedEpoch == f.previousEpoch)
+            CanvasWriter.write(canvas, f.pixels, f.offset, f.minX, f.minY, f.maxX, f.maxY);
+        else
+            CanvasWriter.write(canvas, f.pixels, f.offset, 0, 0, 127, 127);
+        sharedEpoch = f.epoch;
     }
 }
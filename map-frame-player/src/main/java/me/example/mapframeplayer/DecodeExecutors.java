@@ -0,0 +1,215 @@
+package me.example.mapframeplayer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// 插件自己的解码线程，不再长期占用 Bukkit 的异步线程池。
+//   io  - 预读 / ffmpeg 读管道 / stderr 排空这类长时间阻塞的循环；JVM 支持时用虚拟线程（反射获取，编译目标仍是 17），
+//         否则退回守护线程的 cached pool
+//   cpu - 有界的 fork/join 池，做量化这类纯计算；io 线程把每帧的计算交过来并等它算完，
+//         大屏的量化在池里再按行带拆开并行（见 FrameSourceLoader.RowBands）
+// 每个 io 任务返回 Task，停止时 cancel() 打断并在有限时间内 await()。
+class DecodeExecutors {
+    interface Work {
+        void run() throws IOException;
+    }
+
+    static final class Task {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Thread runner = null;
+        private boolean cancelled = false;
+
+        // 打断正在跑的线程；任务还没开始则直接不跑
+        synchronized void cancel() {
+            cancelled = true;
+            if (runner != null)
+                runner.interrupt();
+        }
+
+        boolean await(long timeoutMillis) {
+            try {
+                return done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return done.getCount() == 0;
+            }
+        }
+
+        boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        private synchronized boolean begin() {
+            if (cancelled)
+                return false;
+            runner = Thread.currentThread();
+            return true;
+        }
+
+        private void end() {
+            synchronized (this) {
+                runner = null;
+            }
+            // 平台线程会被池复用，不能把打断标记带给下一个任务
+            Thread.interrupted();
+            done.countDown();
+        }
+    }
+
+    private final Logger logger;
+    private final ExecutorService io;
+    private final ForkJoinPool cpu;
+    private final boolean virtual;
+
+    DecodeExecutors(Logger logger, int cpuThreads) {
+        this.logger = logger;
+        ExecutorService v = newVirtualExecutor();
+        this.virtual = v != null;
+        this.io = v != null ? v : Executors.newCachedThreadPool(named("mplay-io-"));
+        int n = cpuThreads > 0 ? cpuThreads : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger seq = new AtomicInteger();
+        this.cpu = new ForkJoinPool(n, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("mplay-decode-" + seq.getAndIncrement());
+            return t;
+        }, null, false);
+    }
+
+    // 在 io 线程上跑一个长循环
+    Task start(String name, Runnable body) {
+        Task task = new Task();
+        try {
+            io.execute(() -> {
+                if (!task.begin()) {
+                    task.end();
+                    return;
+                }
+                try {
+                    body.run();
+                } catch (Throwable t) {
+                    logger.log(Level.WARNING, "[mplay] " + name + " failed", t);
+                } finally {
+                    task.end();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已经 shutdown（插件关闭中）
+            task.end();
+        }
+        return task;
+    }
+
+    // 在 cpu 池里跑一帧的计算并等它完成；等待中被打断时抛 InterruptedIOException。
+    // fork/join 的 cancel 停不下已经在跑的计算（和它的 RowBands 子任务），它还在写调用方的帧缓冲，
+    // 所以还没开始的直接作废，已经开始的等它算完再抛，调用方拿到异常后可以放心把缓冲还回池里
+    void compute(Work work) throws IOException {
+        // 0 = 没开始，1 = 在跑，2 = 调用方已放弃
+        AtomicInteger state = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(1);
+        Future<?> f;
+        try {
+            f = cpu.submit(() -> {
+                if (!state.compareAndSet(0, 1))
+                    return null;
+                try {
+                    work.run();
+                } finally {
+                    finished.countDown();
+                }
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            work.run();
+            return;
+        }
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            if (!state.compareAndSet(0, 2))
+                awaitUninterruptibly(finished);
+            f.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("decode interrupted");
+        } catch (ExecutionException e) {
+            Throwable c = e.getCause();
+            if (c instanceof IOException)
+                throw (IOException) c;
+            if (c instanceof RuntimeException)
+                throw (RuntimeException) c;
+            if (c instanceof Error)
+                throw (Error) c;
+            throw new IOException(c);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    // 插件关闭：不再接新任务，打断剩下的线程，最多等 timeoutMillis
+    void shutdown(long timeoutMillis) {
+        io.shutdownNow();
+        cpu.shutdownNow();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            boolean ok = io.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+            long left = Math.max(0L, deadline - System.nanoTime());
+            ok &= cpu.awaitTermination(left, TimeUnit.NANOSECONDS);
+            if (!ok)
+                logger.warning("[mplay] decode threads did not stop within " + timeoutMillis + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    String describe() {
+        return (virtual ? "virtual" : "platform") + " io, " + cpu.getParallelism() + " decode threads";
+    }
+
+    // Java 21+：Thread.ofVirtual().name("mplay-io-", 0).factory() + Executors.newThreadPerTaskExecutor
+    private static ExecutorService newVirtualExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "mplay-io-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method m = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) m.invoke(null, factory);
+        } catch (Throwable ignore) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,149 @@
+package me.example.mapframeplayer;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+// lut.engine=direct：不用 16 MB 表，每个像素直接在 OKLab 里找最近的调色板颜色。
+// 调色板来自 palette.csv / MapPalette，换 Minecraft 版本时不需要重新生成 LUT。
+// 视频相邻像素、相邻帧的颜色高度重复，前面放一个 64K 项的直接映射缓存（rgb << 8 | 索引，0 = 空；
+// 索引 0 是透明色，不会是结果，所以 rgb=0 的项也不为 0）。多线程并发读写只会偶尔多算一次，不会出错。
+// 没命中的像素攒成一批交给 Kernel：有 jdk.incubator.vector 时用 SIMD 内核，否则用标量剪枝搜索。
+final class DirectPaletteLut extends ColorLut {
+    interface Kernel {
+        // 第 i 个像素的 OKLab 为 (l[i], a[i], b[i])，结果调色板索引写进 out[i]
+        void nearest(float[] l, float[] a, float[] b, int n, int[] out);
+
+        String describe();
+    }
+
+    private static final int MEMO_BITS = 16;
+    private static final int BATCH = 128;
+
+    private final OklabPalette palette;
+    private final Kernel kernel;
+    private final int[] memo = new int[1 << MEMO_BITS];
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private static final class Scratch {
+        final int[] rgb = new int[BATCH];
+        final int[] missRgb = new int[BATCH];
+        final int[] missPos = new int[BATCH];
+        final float[] l = new float[BATCH];
+        final float[] a = new float[BATCH];
+        final float[] b = new float[BATCH];
+        final int[] result = new int[BATCH];
+    }
+
+    private DirectPaletteLut(OklabPalette palette, Kernel kernel) {
+        this.palette = palette;
+        this.kernel = kernel;
+    }
+
+    // useVector=false 或者 JVM 没带 --add-modules jdk.incubator.vector 时用标量内核
+    static DirectPaletteLut create(int[] paletteRgb, boolean useVector, Logger logger) {
+        OklabPalette palette = new OklabPalette(paletteRgb);
+        Kernel kernel = null;
+        if (useVector && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                kernel = (Kernel) Class.forName("me.example.mapframeplayer.VectorPaletteKernel")
+                        .getDeclaredConstructor(OklabPalette.class).newInstance(palette);
+            } catch (Throwable t) {
+                logger.warning("[mplay] vector palette kernel unavailable, using scalar: " + t);
+            }
+        }
+        if (kernel == null)
+            kernel = new ScalarKernel(palette);
+        return new DirectPaletteLut(palette, kernel);
+    }
+
+    @Override
+    byte lookup(int rgb) {
+        rgb &= 0xFFFFFF;
+        int slot = slot(rgb);
+        int e = memo[slot];
+        if (e != 0 && (e >>> 8) == rgb)
+            return (byte) e;
+        Scratch s = scratch.get();
+        Oklab.fast(rgb, s.l, s.a, s.b, 0);
+        int idx = palette.nearest(s.l[0], s.a[0], s.b[0]);
+        memo[slot] = (rgb << 8) | idx;
+        return (byte) idx;
+    }
+
+    @Override
+    void rgb24(byte[] src, int srcOff, byte[] out, int dstOff, int n) {
+        Scratch s = scratch.get();
+        for (int done = 0; done < n; done += BATCH) {
+            int m = Math.min(BATCH, n - done);
+            int p = srcOff + done * 3;
+            for (int i = 0; i < m; i++, p += 3)
+                s.rgb[i] = ((src[p] & 0xFF) << 16) | ((src[p + 1] & 0xFF) << 8) | (src[p + 2] & 0xFF);
+            convert(s, s.rgb, 0, m, out, dstOff + done);
+        }
+    }
+
+    @Override
+    void argb(int[] src, int srcOff, byte[] out, int dstOff, int n) {
+        Scratch s = scratch.get();
+        for (int done = 0; done < n; done += BATCH)
+            convert(s, src, srcOff + done, Math.min(BATCH, n - done), out, dstOff + done);
+    }
+
+    private void convert(Scratch s, int[] rgbs, int off, int n, byte[] out, int dstOff) {
+        int misses = 0;
+        for (int i = 0; i < n; i++) {
+            int rgb = rgbs[off + i] & 0xFFFFFF;
+            int e = memo[slot(rgb)];
+            if (e != 0 && (e >>> 8) == rgb) {
+                out[dstOff + i] = (byte) e;
+                continue;
+            }
+            Oklab.fast(rgb, s.l, s.a, s.b, misses);
+            s.missRgb[misses] = rgb;
+            s.missPos[misses] = i;
+            misses++;
+        }
+        if (misses == 0)
+            return;
+        kernel.nearest(s.l, s.a, s.b, misses, s.result);
+        for (int j = 0; j < misses; j++) {
+            int rgb = s.missRgb[j];
+            int idx = s.result[j];
+            out[dstOff + s.missPos[j]] = (byte) idx;
+            memo[slot(rgb)] = (rgb << 8) | idx;
+        }
+    }
+
+    private static int slot(int rgb) {
+        return (rgb * 0x9E3779B1) >>> (32 - MEMO_BITS);
+    }
+
+    @Override
+    long sizeBytes() {
+        return memo.length * 4L + palette.size * 32L;
+    }
+
+    @Override
+    String describe() {
+        return String.format(Locale.US, "direct OKLab, %d colors, %s", palette.size, kernel.describe());
+    }
+
+    private static final class ScalarKernel implements Kernel {
+        private final OklabPalette palette;
+
+        ScalarKernel(OklabPalette palette) {
+            this.palette = palette;
+        }
+
+        @Override
+        public void nearest(float[] l, float[] a, float[] b, int n, int[] out) {
+            for (int i = 0; i < n; i++)
+                out[i] = palette.nearest(l[i], a[i], b[i]);
+        }
+
+        @Override
+        public String describe() {
+            return "scalar";
+        }
+    }
+}
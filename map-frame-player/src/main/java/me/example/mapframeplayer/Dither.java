@@ -0,0 +1,333 @@
+package me.example.mapframeplayer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Logger;
+
+// dither.mode：视频/直播帧在解码线程上先抖动再量化，不用再拿 gen.py 离线预处理。
+//   bayer           - 4x4 有序抖动，与 gen.py 的 ordered4 相同（幅度 dither.amount），逐像素独立，按行带并行
+//   floyd-steinberg - 误差扩散。逐行顺序扫描或按波前分块并行（见 floydSteinberg），两者结果逐字节相同。
+//                     逐行版单线程，16x9 墙一帧 85~89 ms（真实 LUT，单核实测），到不了 20 fps；
+//                     单核上波前还更慢（96~98 ms），多核收益还没测过（DitherBenchmark）。
+//                     dither.wavefront：auto（默认）= 帧不少于 WAVEFRONT_AUTO_TILES 张图且解码池至少 2 线程时走波前，
+//                     否则逐行；true/false 强制
+// 误差在 sRGB 里算：抖动后的目标色 - 选中调色板颜色。不走蛇形扫描，否则波前的依赖方向不固定。
+// 一个 Dither 绑定一张 LUT 和它的调色板，换 LUT 时整个换掉。
+final class Dither {
+    enum Mode {
+        NONE, BAYER, FLOYD_STEINBERG;
+
+        static Mode parse(String s, Logger logger) {
+            if (s == null || s.trim().isEmpty())
+                return NONE;
+            try {
+                return Mode.valueOf(s.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                logger.warning("[mplay] unknown dither.mode '" + s + "', using none");
+                return NONE;
+            }
+        }
+    }
+
+    enum Wavefront {
+        OFF, ON, AUTO;
+
+        // 兼容原来的 true/false
+        static Wavefront parse(String s, Logger logger) {
+            if (s == null || s.trim().isEmpty())
+                return AUTO;
+            switch (s.trim().toLowerCase(Locale.ROOT)) {
+                case "true":
+                    return ON;
+                case "false":
+                    return OFF;
+                case "auto":
+                    return AUTO;
+                default:
+                    logger.warning("[mplay] unknown dither.wavefront '" + s + "', using auto");
+                    return AUTO;
+            }
+        }
+    }
+
+    private static final int[][] BAYER4 = {
+            {0, 8, 2, 10},
+            {12, 4, 14, 6},
+            {3, 11, 1, 9},
+            {15, 7, 13, 5},
+    };
+
+    // 误差扩散的块：BAND 行 x TILE 个斜列（u = x + y）
+    static final int BAND = 32;
+    static final int TILE = 256;
+
+    private final Mode mode;
+    private final ColorLut lut;
+    // 调色板索引 -> 0xRRGGBB，没有的颜色为 -1
+    private final int[] palette;
+    private final double amount;
+    private final Wavefront wavefront;
+    // bayer：[y & 3][x & 3] 的通道偏移
+    private final int[][] offsets = new int[4][4];
+    // floyd-steinberg 的误差缓冲按帧尺寸复用，多屏同时解码时各取一份
+    private final ConcurrentLinkedQueue<State> spare = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<int[][]> spareRows = new ConcurrentLinkedQueue<>();
+
+    private Dither(Mode mode, double amount, Wavefront wavefront, ColorLut lut, int[] palette) {
+        this.mode = mode;
+        this.amount = amount;
+        this.wavefront = wavefront;
+        this.lut = lut;
+        this.palette = palette;
+        for (int y = 0; y < 4; y++)
+            for (int x = 0; x < 4; x++)
+                offsets[y][x] = (int) Math.rint(amount * (BAYER4[y][x] / 16.0 - 0.5));
+    }
+
+    // mode 为 NONE 时返回 null，调用方照常直接查表
+    static Dither create(Mode mode, double amount, Wavefront wavefront, ColorLut lut, int[] palette) {
+        if (mode == Mode.NONE || lut == null)
+            return null;
+        return new Dither(mode, amount, wavefront, lut, palette);
+    }
+
+    // 与 FrameSourceLoader.rgb24ToTiles 相同：rgb24 行优先进，tile-major 出，宽高须为 128 的倍数
+    void rgb24ToTiles(byte[] rgb, int width, int height, byte[] out) throws IOException {
+        if (out.length != width * height)
+            throw new IOException("frame buffer size mismatch: " + out.length + " need=" + width * height);
+        if (mode == Mode.BAYER)
+            FrameSourceLoader.RowBands.run(width, height, (y0, y1) -> bayerRows(rgb, width, out, y0, y1));
+        else if (useWavefront(wavefront, width, height, parallel()))
+            floydSteinberg(rgb, width, height, out);
+        else
+            floydSteinbergRaster(rgb, width, height, out);
+    }
+
+    String describe() {
+        if (mode == Mode.BAYER)
+            return String.format(Locale.US, "bayer 4x4 amount=%.1f", amount);
+        switch (wavefront) {
+            case ON:
+                return "floyd-steinberg wavefront " + BAND + "x" + TILE;
+            case AUTO:
+                return "floyd-steinberg (wavefront " + BAND + "x" + TILE + " from " + WAVEFRONT_AUTO_TILES + " maps in a parallel pool)";
+            default:
+                return "floyd-steinberg";
+        }
+    }
+
+    // 逐行版约 0.6 ms 一张图，84 张左右就用完 20 fps 的 50 ms；再留点余量给解码和发包
+    static final int WAVEFRONT_AUTO_TILES = 64;
+
+    static boolean useWavefront(Wavefront w, int width, int height, boolean parallel) {
+        if (w != Wavefront.AUTO)
+            return w == Wavefront.ON;
+        return parallel && (width / 128) * (height / 128) >= WAVEFRONT_AUTO_TILES;
+    }
+
+    private static boolean parallel() {
+        return ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool().getParallelism() >= 2;
+    }
+
+    private void bayerRows(byte[] rgb, int width, byte[] out, int y0, int y1) {
+        int cols = width / 128;
+        byte[] seg = new byte[128 * 3];
+        int p = y0 * width * 3;
+        for (int y = y0; y < y1; y++) {
+            int[] row = offsets[y & 3];
+            int dst = PaletteFrame.index(0, y, cols);
+            for (int c = 0; c < cols; c++, dst += PaletteFrame.TILE_BYTES) {
+                for (int x = 0, q = 0; x < 128; x++) {
+                    int d = row[x & 3];
+                    seg[q++] = (byte) clamp((rgb[p++] & 0xFF) + d);
+                    seg[q++] = (byte) clamp((rgb[p++] & 0xFF) + d);
+                    seg[q++] = (byte) clamp((rgb[p++] & 0xFF) + d);
+                }
+                lut.rgb24(seg, 0, out, dst, 128);
+            }
+        }
+    }
+
+    // 逐行顺序的误差扩散。误差行下标为 (x + 1) * 3，两端各多一格常为 0 的图外格子
+    private void floydSteinbergRaster(byte[] rgb, int width, int height, byte[] out) {
+        int cols = width / 128;
+        int span = (width + 2) * 3;
+        int[][] rows = spareRows.poll();
+        if (rows == null || rows[0].length != span)
+            rows = new int[2][span];
+        int[] up = rows[0], cur = rows[1];
+        Arrays.fill(up, 0);
+        int q = 0;
+        for (int y = 0; y < height; y++) {
+            int dst = PaletteFrame.index(0, y, cols);
+            int cr = 0, cg = 0, cb = 0;
+            for (int x = 0, k = 3; x < width; x++, k += 3) {
+                int vr = clamp((rgb[q] & 0xFF) + ((7 * cr + 5 * up[k] + 3 * up[k + 3] + up[k - 3] + 8) >> 4));
+                int vg = clamp((rgb[q + 1] & 0xFF) + ((7 * cg + 5 * up[k + 1] + 3 * up[k + 4] + up[k - 2] + 8) >> 4));
+                int vb = clamp((rgb[q + 2] & 0xFF) + ((7 * cb + 5 * up[k + 2] + 3 * up[k + 5] + up[k - 1] + 8) >> 4));
+                q += 3;
+                int idx = lut.lookup((vr << 16) | (vg << 8) | vb) & 0xFF;
+                out[dst] = (byte) idx;
+                dst += ((dst + 1) & 127) == 0 ? PaletteFrame.TILE_BYTES - 127 : 1;
+                int c = palette[idx];
+                cr = cg = cb = 0;
+                if (c >= 0) {
+                    cr = vr - ((c >> 16) & 0xFF);
+                    cg = vg - ((c >> 8) & 0xFF);
+                    cb = vb - (c & 0xFF);
+                }
+                cur[k] = cr;
+                cur[k + 1] = cg;
+                cur[k + 2] = cb;
+            }
+            int[] t = up;
+            up = cur;
+            cur = t;
+        }
+        spareRows.offer(rows);
+    }
+
+    // 像素 (x, y) 的误差来自 (x-1, y) 7/16、(x+1, y-1) 3/16、(x, y-1) 5/16、(x-1, y-1) 1/16。
+    // 换成斜坐标 u = x + y 后四个来源都在 u' <= u、y' <= y，于是 (行带 i, 斜列段 j) 的矩形块
+    // 只依赖左、上、左上三块：同一条反对角线 i + j 上的块互不相关，逐条对角线 fork 出去。
+    // 每个行带只存一行按 u 排的误差（下一行读完一格就覆盖一格），块之间每行交接最后两格。
+    private void floydSteinberg(byte[] rgb, int width, int height, byte[] out) {
+        State s = spare.poll();
+        if (s == null || s.width != width || s.height != height)
+            s = new State(width, height);
+        State st = s;
+        if (!parallel()) {
+            for (int i = 0; i < st.bands; i++)
+                for (int j = st.firstTile(i); j <= st.lastTile(i); j++)
+                    tile(st, rgb, out, i, j);
+        } else {
+            List<ForkJoinTask<?>> wave = new ArrayList<>();
+            for (int d = 0; d < st.bands + st.tiles - 1; d++) {
+                wave.clear();
+                for (int i = Math.max(0, d - st.tiles + 1); i <= Math.min(d, st.bands - 1); i++) {
+                    int j = d - i;
+                    if (j < st.firstTile(i) || j > st.lastTile(i))
+                        continue;
+                    int band = i;
+                    wave.add(ForkJoinTask.adapt(() -> tile(st, rgb, out, band, j)));
+                }
+                if (wave.size() == 1)
+                    wave.get(0).invoke();
+                else if (!wave.isEmpty())
+                    ForkJoinTask.invokeAll(wave);
+            }
+        }
+        spare.offer(st);
+    }
+
+    private void tile(State s, byte[] rgb, byte[] out, int band, int j) {
+        int width = s.width;
+        int cols = width / 128;
+        int y0 = band * BAND;
+        int rows = Math.min(BAND, s.height - y0);
+        int u0 = j * TILE;
+        int u1 = u0 + TILE;
+        int[] cur = s.err[band];
+        int[] above = band > 0 ? s.err[band - 1] : s.zero;
+        // 本行带的第一块左边没有块，交接格按 0 算（不读上一帧留下的旧值）
+        boolean first = j == s.firstTile(band);
+        int[] edgeIn = s.edge[band][(j + 1) & 1];
+        int[] edgeOut = s.edge[band][j & 1];
+
+        for (int r = 0; r < rows; r++) {
+            int y = y0 + r;
+            int[] prev = r == 0 ? above : cur;
+            // 上一行在 u-2、u-1 处的误差，本行在 u-1 处的误差
+            int r2 = 0, g2 = 0, b2 = 0, r1 = 0, g1 = 0, b1 = 0, cr = 0, cg = 0, cb = 0;
+            if (r == 0 && u0 >= 2) {
+                int k = (u0 - 2) * 3;
+                r2 = above[k]; g2 = above[k + 1]; b2 = above[k + 2];
+                r1 = above[k + 3]; g1 = above[k + 4]; b1 = above[k + 5];
+            } else if (r > 0 && !first) {
+                int k = (r - 1) * 6;
+                r2 = edgeIn[k]; g2 = edgeIn[k + 1]; b2 = edgeIn[k + 2];
+                r1 = edgeIn[k + 3]; g1 = edgeIn[k + 4]; b1 = edgeIn[k + 5];
+            }
+            if (!first) {
+                int k = r * 6 + 3;
+                cr = edgeIn[k]; cg = edgeIn[k + 1]; cb = edgeIn[k + 2];
+            }
+
+            // 块内本行的有效像素是 [lo, hi)，两边是图外的格子，误差为 0
+            int lo = Math.max(u0, y), hi = Math.min(u1, y + width);
+            int q = (y * width + lo - y) * 3;
+            int dst = lo < hi ? PaletteFrame.index(lo - y, y, cols) : 0;
+            for (int u = u0; u < u1; u++) {
+                int k = u * 3;
+                int r0 = prev[k], g0 = prev[k + 1], b0 = prev[k + 2];
+                int er = 0, eg = 0, eb = 0;
+                if (u >= lo && u < hi) {
+                    int vr = clamp((rgb[q] & 0xFF) + ((7 * cr + 5 * r1 + 3 * r0 + r2 + 8) >> 4));
+                    int vg = clamp((rgb[q + 1] & 0xFF) + ((7 * cg + 5 * g1 + 3 * g0 + g2 + 8) >> 4));
+                    int vb = clamp((rgb[q + 2] & 0xFF) + ((7 * cb + 5 * b1 + 3 * b0 + b2 + 8) >> 4));
+                    q += 3;
+                    int idx = lut.lookup((vr << 16) | (vg << 8) | vb) & 0xFF;
+                    out[dst] = (byte) idx;
+                    // 跨到右边一块地图
+                    dst += ((dst + 1) & 127) == 0 ? PaletteFrame.TILE_BYTES - 127 : 1;
+                    int c = palette[idx];
+                    if (c >= 0) {
+                        er = vr - ((c >> 16) & 0xFF);
+                        eg = vg - ((c >> 8) & 0xFF);
+                        eb = vb - (c & 0xFF);
+                    }
+                }
+                cur[k] = er;
+                cur[k + 1] = eg;
+                cur[k + 2] = eb;
+                r2 = r1; g2 = g1; b2 = b1;
+                r1 = r0; g1 = g0; b1 = b0;
+                cr = er; cg = eg; cb = eb;
+            }
+            System.arraycopy(cur, (u1 - 2) * 3, edgeOut, r * 6, 6);
+        }
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : (v > 255 ? 255 : v);
+    }
+
+    // 误差扩散的工作区。只处理和有效像素相交的块，从没处理过的位置永远是 0，所以不用每帧清零
+    private static final class State {
+        final int width;
+        final int height;
+        final int bands;
+        final int tiles;
+        // [行带][u * 3 + 通道]
+        final int[][] err;
+        // [行带][块号奇偶][行 * 6]：该块每行在最后两格的误差，给右边一块用
+        final int[][][] edge;
+        // 第一行带上面的"上一行"
+        final int[] zero;
+
+        State(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.bands = (height + BAND - 1) / BAND;
+            this.tiles = (width + height + TILE - 1) / TILE;
+            int span = tiles * TILE * 3;
+            this.err = new int[bands][span];
+            this.edge = new int[bands][2][BAND * 6];
+            this.zero = new int[span];
+        }
+
+        int firstTile(int band) {
+            return band * BAND / TILE;
+        }
+
+        int lastTile(int band) {
+            int lastRow = Math.min(height, (band + 1) * BAND) - 1;
+            return (lastRow + width - 1) / TILE;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package me.example.mapframeplayer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// buffer.off-heap=true 时，环形缓冲里排队的帧放在堆外 direct ByteBuffer slab 里，
+// 堆上只留正在解码 / 正在展示的几帧。slab 按需分配（每块 SLAB_FRAMES 帧），close() 时立即释放。
+// 每个槽位对应一个固定的 Slot 外壳（pixels 为 null），排队时不分配对象。
+// 存取可以并发（读锁），close 拿写锁，保证释放之后没人再碰这块内存。
+class FrameArena {
+    private static final int SLAB_FRAMES = 8;
+
+    static final class Slot extends PaletteFrame {
+        final FrameArena owner;
+        private final ByteBuffer slab;
+        private final int offset;
+
+        private Slot(FrameArena owner, ByteBuffer slab, int offset) {
+            super(null, owner.cols, owner.rows, new long[owner.cols * owner.rows]);
+            this.owner = owner;
+            this.slab = slab;
+            this.offset = offset;
+        }
+    }
+
+    private final int cols;
+    private final int rows;
+    private final int frameBytes;
+    private final int maxFrames;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed = false;
+
+    // 以下由 this 保护
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final ArrayDeque<Slot> free = new ArrayDeque<>();
+    private ByteBuffer currentSlab = null;
+    private int slotsInSlab = 0;
+    private int created = 0;
+
+    private final AtomicInteger used = new AtomicInteger();
+    private volatile long reservedBytes = 0L;
+
+    FrameArena(int cols, int rows, int maxFrames) {
+        this.cols = cols;
+        this.rows = rows;
+        this.frameBytes = cols * rows * PaletteFrame.TILE_BYTES;
+        this.maxFrames = maxFrames;
+    }
+
+    // 解码线程：把堆上的帧拷进一个槽位，返回外壳；已关闭或槽位用完时返回 null
+    Slot store(PaletteFrame src) {
+        lock.readLock().lock();
+        try {
+            if (closed)
+                return null;
+            Slot shell = takeSlot();
+            if (shell == null)
+                return null;
+            shell.slab.put(shell.offset, src.pixels, 0, frameBytes);
+            System.arraycopy(src.tileHashes, 0, shell.tileHashes, 0, shell.tileHashes.length);
+            used.incrementAndGet();
+            return shell;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 主线程：把槽位内容拷回堆上的 dst；已关闭时返回 false
+    boolean load(Slot shell, PaletteFrame dst) {
+        lock.readLock().lock();
+        try {
+            if (closed || shell.owner != this)
+                return false;
+            shell.slab.get(shell.offset, dst.pixels, 0, frameBytes);
+            System.arraycopy(shell.tileHashes, 0, dst.tileHashes, 0, dst.tileHashes.length);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    synchronized void release(Slot shell) {
+        if (closed || shell == null || shell.owner != this)
+            return;
+        free.push(shell);
+        used.decrementAndGet();
+    }
+
+    // 停播 / 清屏时调用：之后所有 store/load 都失败，slab 立即释放
+    void close() {
+        lock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (closed)
+                    return;
+                closed = true;
+                for (ByteBuffer slab : slabs)
+                    DirectMemory.free(slab);
+                slabs.clear();
+                free.clear();
+                currentSlab = null;
+                used.set(0);
+                reservedBytes = 0L;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    long reservedBytes() {
+        return reservedBytes;
+    }
+
+    long usedBytes() {
+        return (long) used.get() * frameBytes;
+    }
+
+    private synchronized Slot takeSlot() {
+        Slot shell = free.poll();
+        if (shell != null)
+            return shell;
+        if (created >= maxFrames)
+            return null;
+        if (currentSlab == null || slotsInSlab == SLAB_FRAMES) {
+            int frames = Math.min(SLAB_FRAMES, maxFrames - created);
+            currentSlab = ByteBuffer.allocateDirect(frames * frameBytes);
+            slabs.add(currentSlab);
+            reservedBytes += (long) frames * frameBytes;
+            slotsInSlab = 0;
+        }
+        shell = new Slot(this, currentSlab, slotsInSlab * frameBytes);
+        slotsInSlab++;
+        created++;
+        return shell;
+    }
+
+    // direct buffer 默认要等 GC 才释放；能拿到 Unsafe.invokeCleaner 就立即释放
+    private static final class DirectMemory {
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method m = null;
+            try {
+                Class<?> c = Class.forName("sun.misc.Unsafe");
+                Field f = c.getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                unsafe = f.get(null);
+                m = c.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (Throwable ignore) {
+                unsafe = null;
+                m = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = m;
+        }
+
+        static void free(ByteBuffer buf) {
+            if (INVOKE_CLEANER == null || buf == null || !buf.isDirect())
+                return;
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buf);
+            } catch (Throwable ignore) {
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package me.example.mapframeplayer;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// buffer.compression：排队帧在解码线程压缩，发布前在主线程解压回池里的堆上帧。
+// 调色板帧大片同色、颜色少，压缩后同样的内存能多缓冲很多帧。
+//   rle     - PackBits 游程编码，几乎不占 CPU
+//   deflate - Deflater BEST_SPEED，压得更小，解码线程多花一些 CPU
+// 压缩只在解码线程、解压只在主线程，各自一把锁（换播放时新旧解码线程可能短暂重叠）。
+class FrameCodec {
+    enum Mode {
+        NONE, RLE, DEFLATE;
+
+        static Mode parse(String s, Logger logger) {
+            if (s == null || s.trim().isEmpty())
+                return NONE;
+            try {
+                return Mode.valueOf(s.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                logger.warning("[mplay] unknown buffer.compression '" + s + "', using none");
+                return NONE;
+            }
+        }
+    }
+
+    // 排队中的压缩帧：像素在 data 里，pixels 为 null
+    static final class Compressed extends PaletteFrame {
+        final byte[] data;
+
+        private Compressed(PaletteFrame src, byte[] data) {
+            super(null, src.cols, src.rows, src.tileHashes.clone());
+            this.data = data;
+        }
+    }
+
+    private final Mode mode;
+    private final int frameBytes;
+
+    private final Object compressLock = new Object();
+    private final byte[] scratch;
+    private final Deflater deflater;
+
+    private final Object decompressLock = new Object();
+    private final Inflater inflater;
+
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong packedBytes = new AtomicLong();
+    private final AtomicLong compressNanos = new AtomicLong();
+
+    FrameCodec(Mode mode, int frameBytes) {
+        this.mode = mode;
+        this.frameBytes = frameBytes;
+        // PackBits 最坏每 128 字节多 1 字节；deflate 不够时会扩容
+        this.scratch = new byte[frameBytes + frameBytes / 128 + 64];
+        this.deflater = mode == Mode.DEFLATE ? new Deflater(Deflater.BEST_SPEED) : null;
+        this.inflater = mode == Mode.DEFLATE ? new Inflater() : null;
+    }
+
+    Mode mode() {
+        return mode;
+    }
+
+    // 解码线程
+    Compressed compress(PaletteFrame src) {
+        long t0 = System.nanoTime();
+        byte[] data;
+        synchronized (compressLock) {
+            if (mode == Mode.RLE) {
+                int n = packBits(src.pixels, frameBytes, scratch);
+                data = Arrays.copyOf(scratch, n);
+            } else {
+                data = deflate(src.pixels);
+            }
+        }
+        compressNanos.addAndGet(System.nanoTime() - t0);
+        frames.incrementAndGet();
+        rawBytes.addAndGet(frameBytes);
+        packedBytes.addAndGet(data.length);
+        return new Compressed(src, data);
+    }
+
+    // 主线程：解压到 dst（池里的堆上帧）
+    void decompress(Compressed src, PaletteFrame dst) throws DataFormatException {
+        synchronized (decompressLock) {
+            if (mode == Mode.RLE) {
+                unpackBits(src.data, dst.pixels, frameBytes);
+            } else {
+                inflater.reset();
+                inflater.setInput(src.data);
+                int n = inflater.inflate(dst.pixels, 0, frameBytes);
+                if (n != frameBytes)
+                    throw new DataFormatException("inflated " + n + " of " + frameBytes + " bytes");
+            }
+        }
+        System.arraycopy(src.tileHashes, 0, dst.tileHashes, 0, dst.tileHashes.length);
+    }
+
+    // 还没压过帧时按原始大小算
+    long averagePackedBytes() {
+        long n = frames.get();
+        return n > 0 ? packedBytes.get() / n : frameBytes;
+    }
+
+    String describe() {
+        long n = frames.get();
+        if (n == 0)
+            return "codec=" + mode.name().toLowerCase(Locale.ROOT);
+        return String.format(Locale.US, "codec=%s %.1fx %.2fms/frame", mode.name().toLowerCase(Locale.ROOT),
+                (double) rawBytes.get() / Math.max(1L, packedBytes.get()), compressNanos.get() / 1e6 / n);
+    }
+
+    private byte[] deflate(byte[] src) {
+        deflater.reset();
+        deflater.setInput(src, 0, frameBytes);
+        deflater.finish();
+        byte[] out = scratch;
+        int n = 0;
+        while (!deflater.finished()) {
+            if (n == out.length)
+                out = Arrays.copyOf(out, out.length * 2);
+            n += deflater.deflate(out, n, out.length - n);
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // PackBits：控制字节 c < 128 表示后面 c+1 个原样字节；c >= 128 表示下一个字节重复 c-125 次（3..130）
+    static int packBits(byte[] src, int n, byte[] out) {
+        int i = 0, o = 0;
+        while (i < n) {
+            byte v = src[i];
+            int run = 1;
+            while (run < 130 && i + run < n && src[i + run] == v)
+                run++;
+            if (run >= 3) {
+                out[o++] = (byte) (run - 3 + 128);
+                out[o++] = v;
+                i += run;
+                continue;
+            }
+            int start = i;
+            int len = 0;
+            while (i < n && len < 128) {
+                if (i + 2 < n && src[i] == src[i + 1] && src[i] == src[i + 2])
+                    break;
+                i++;
+                len++;
+            }
+            out[o++] = (byte) (len - 1);
+            System.arraycopy(src, start, out, o, len);
+            o += len;
+        }
+        return o;
+    }
+
+    static void unpackBits(byte[] data, byte[] dst, int n) throws DataFormatException {
+        int i = 0, o = 0;
+        try {
+            while (o < n) {
+                int c = data[i++] & 0xFF;
+                if (c < 128) {
+                    int len = c + 1;
+                    System.arraycopy(data, i, dst, o, len);
+                    i += len;
+                    o += len;
+                } else {
+                    int len = c - 125;
+                    Arrays.fill(dst, o, o + len, data[i++]);
+                    o += len;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new DataFormatException("truncated rle frame");
+        }
+    }
+}
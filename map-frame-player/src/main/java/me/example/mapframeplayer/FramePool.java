@@ -0,0 +1,46 @@
+package me.example.mapframeplayer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 每个屏幕一份的帧缓冲池。帧的所有权：解码线程 acquire -> 环形缓冲 -> 主线程发布，
+// 下一帧发布后（renderer 都已换到新帧上）或被丢弃时 release 回池；稳定播放时不再分配整帧数组。
+// ArrayBlockingQueue 放入/取出都不分配节点；解码线程和主线程都会用到。
+class FramePool {
+    private final int cols;
+    private final int rows;
+    private final ArrayBlockingQueue<PaletteFrame> free;
+    private final AtomicLong allocated = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    FramePool(int cols, int rows, int maxFree) {
+        this.cols = cols;
+        this.rows = rows;
+        this.free = new ArrayBlockingQueue<>(Math.max(1, maxFree));
+    }
+
+    PaletteFrame acquire() {
+        PaletteFrame f = free.poll();
+        if (f != null) {
+            reused.incrementAndGet();
+            return f;
+        }
+        allocated.incrementAndGet();
+        return new PaletteFrame(cols, rows);
+    }
+
+    // 调用方保证之后不再引用 f；尺寸不符或池满就交给 GC
+    void release(PaletteFrame f) {
+        if (f == null || f.pixels == null || f.cols != cols || f.rows != rows)
+            return;
+        free.offer(f);
+    }
+
+    void clear() {
+        free.clear();
+    }
+
+    String describe() {
+        return "pool=" + free.size() + " alloc=" + allocated.get() + " reuse=" + reused.get();
+    }
+}
@@ -0,0 +1,156 @@
+package me.example.mapframeplayer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// 有界单生产者/单消费者环形帧缓冲：解码线程 offer，主线程 poll，size() 是 O(1)。
+// 队列满时生产者 park 等消费者唤醒（不再 sleep 轮询）；直播用 offerDropOldest 丢最旧的帧，
+// 这时生产者也会动 head，所以 head 用 CAS 推进。主线程永远不阻塞。
+// 正常只有一个生产者；旧流水线停不下来、等待超时（decode.stop-timeout-ms）时会和新的短暂重叠，
+// 这时只有先登记的那个能被消费者唤醒，另一个靠 PARK_NANOS 兜底，互相不会把对方的登记清掉。
+class FrameRing<T> {
+    // 生产者 park 的最长时间，只是兜底（停止播放时会主动唤醒）
+    private static final long PARK_NANOS = 100_000_000L;
+
+    private final AtomicReferenceArray<T> slots;
+    // 被丢弃（直播丢帧 / clear）的帧交给它回收
+    private final Consumer<T> recycler;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile int limit;
+    // 在 awaitSpace 里 park 的生产者；只由登记它的线程自己清掉
+    private final AtomicReference<Thread> waiter = new AtomicReference<>();
+    // 生产者加、消费者 clear 归零，都要原子
+    private final AtomicLong dropped = new AtomicLong();
+
+    FrameRing(int capacity, Consumer<T> recycler) {
+        this.recycler = recycler;
+        int cap = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(cap);
+        this.mask = cap - 1;
+        this.limit = capacity;
+    }
+
+    // 当前允许的最大深度（不超过容量）；0 表示暂停，生产者会一直等
+    void setLimit(int limit) {
+        this.limit = Math.max(0, Math.min(limit, mask + 1));
+        wakeProducer();
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int size() {
+        long n = tail.get() - head.get();
+        return n <= 0 ? 0 : (int) Math.min(n, mask + 1);
+    }
+
+    boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    // 测试用
+    Thread waiter() {
+        return waiter.get();
+    }
+
+    // 生产者：有空位时返回 true；keepWaiting 变 false 时返回 false
+    boolean awaitSpace(BooleanSupplier keepWaiting) {
+        Thread me = Thread.currentThread();
+        boolean registered = false;
+        try {
+            while (tail.get() - head.get() >= limit) {
+                if (!keepWaiting.getAsBoolean())
+                    return false;
+                if (!registered)
+                    registered = waiter.compareAndSet(null, me);
+                // 登记之后再查一次，避免消费者在登记前取走帧导致错过唤醒
+                if (tail.get() - head.get() >= limit)
+                    LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            return keepWaiting.getAsBoolean();
+        } finally {
+            if (registered)
+                waiter.compareAndSet(me, null);
+        }
+    }
+
+    // 生产者：满了返回 false
+    boolean offer(T item) {
+        long t = tail.get();
+        if (t - head.get() >= limit)
+            return false;
+        slots.set((int) (t & mask), item);
+        tail.set(t + 1);
+        return true;
+    }
+
+    // 生产者（直播）：满了就丢掉最旧的帧再放入
+    void offerDropOldest(T item) {
+        while (!offer(item)) {
+            if (limit == 0) {
+                dropped.incrementAndGet();
+                recycler.accept(item);
+                return;
+            }
+            T old = poll();
+            if (old != null) {
+                dropped.incrementAndGet();
+                recycler.accept(old);
+            }
+        }
+    }
+
+    // 消费者（主线程）：空时返回 null，不阻塞
+    T poll() {
+        while (true) {
+            long h = head.get();
+            if (h == tail.get())
+                return null;
+            int idx = (int) (h & mask);
+            T item = slots.get(idx);
+            if (head.compareAndSet(h, h + 1)) {
+                // 生产者可能已经在同一槽位放了新帧，所以只在还是原来那一帧时清掉
+                slots.compareAndSet(idx, item, null);
+                wakeProducer();
+                return item;
+            }
+        }
+    }
+
+    // 消费者：丢掉最旧的帧直到不超过 limit，返回丢掉的帧数
+    int trimToLimit() {
+        int n = 0;
+        while (size() > limit) {
+            T old = poll();
+            if (old == null)
+                break;
+            recycler.accept(old);
+            n++;
+        }
+        return n;
+    }
+
+    void clear() {
+        T old;
+        while ((old = poll()) != null)
+            recycler.accept(old);
+        dropped.set(0);
+    }
+
+    void wakeProducer() {
+        Thread w = waiter.get();
+        if (w != null)
+            LockSupport.unpark(w);
+    }
+}
@@ -24,6 +24,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 class FrameSourceLoader {
     private final JavaPlugin plugin;
@@ -31,7 +33,7 @@ class FrameSourceLoader {
         this.plugin = plugin;
     }
 
-    FrameLoadResult loadFromFolder(File dataFolder, String folderPath, int expectedWidth, int expectedHeight, byte[] lut)
+    FrameLoadResult loadFromFolder(File dataFolder, String folderPath, int expectedWidth, int expectedHeight, ColorLut lut)
             throws IOException {
         File folder = new File(dataFolder, "frames/" + folderPath);
 
@@ -113,32 +115,101 @@ class FrameSourceLoader {
         return result;
     }
 
-    byte[] readFrameLinear(File file, int expectedWidth, int expectedHeight, byte[] lut) throws IOException {
+    // 以下读帧/转换方法都输出 tile-major 布局（见 PaletteFrame），宽高须为 128 的倍数
+    byte[] readFrameTiles(File file, int expectedWidth, int expectedHeight, ColorLut lut) throws IOException {
+        return readFrameTiles(file, expectedWidth, expectedHeight, lut, null);
+    }
+
+    // out 不为 null 时写进 out（长度须为 宽*高），否则新分配
+    byte[] readFrameTiles(File file, int expectedWidth, int expectedHeight, ColorLut lut, byte[] out)
+            throws IOException {
         if (isJsonFile(file))
-            return readJsonLinear(file, expectedWidth, expectedHeight, lut);
+            return readJsonTiles(file, expectedWidth, expectedHeight, lut, out);
         if (isSmrfFile(file))
-            return readSmrfLinear(file, expectedWidth * expectedHeight);
+            return readSmrfTiles(file, expectedWidth, expectedHeight, out);
         if (isImageFile(file))
-            return readImageLinear(file, expectedWidth, expectedHeight, lut);
+            return readImageTiles(file, expectedWidth, expectedHeight, lut, out);
         throw new IOException("unsupported frame type: " + file.getName());
     }
 
-    byte[] rgb24ToPalette(byte[] rgb, int width, int height, byte[] lut) throws IOException {
+    byte[] rgb24ToTiles(byte[] rgb, int width, int height, ColorLut lut) throws IOException {
+        return rgb24ToTiles(rgb, width, height, lut, null);
+    }
+
+    // 在 fork/join 池里调用时（DecodeExecutors.compute）大帧按行带并行量化
+    byte[] rgb24ToTiles(byte[] rgb, int width, int height, ColorLut lut, byte[] out) throws IOException {
         if (lut == null)
             throw new IOException("LUT not loaded");
-        byte[] out = new byte[width * height];
-        int p = 0;
-        for (int i = 0; i < out.length; i++) {
-            int r = rgb[p++] & 0xFF;
-            int g = rgb[p++] & 0xFF;
-            int b = rgb[p++] & 0xFF;
-            int key = (r << 16) | (g << 8) | b;
-            out[i] = lut[key];
+        byte[] dst = frameBuffer(out, width * height);
+        RowBands.run(width, height, (y0, y1) -> rgb24Rows(rgb, width, lut, dst, y0, y1));
+        return dst;
+    }
+
+    private static void rgb24Rows(byte[] rgb, int width, ColorLut lut, byte[] out, int y0, int y1) {
+        int cols = width / 128;
+        int p = y0 * width * 3;
+        for (int y = y0; y < y1; y++) {
+            int dst = PaletteFrame.index(0, y, cols);
+            for (int c = 0; c < cols; c++, dst += PaletteFrame.TILE_BYTES, p += 128 * 3)
+                lut.rgb24(rgb, p, out, dst, 128);
+        }
+    }
+
+    private static void argbRows(int[] argb, int width, ColorLut lut, byte[] out, int y0, int y1) {
+        int cols = width / 128;
+        int i = y0 * width;
+        for (int y = y0; y < y1; y++) {
+            int dst = PaletteFrame.index(0, y, cols);
+            for (int c = 0; c < cols; c++, dst += PaletteFrame.TILE_BYTES, i += 128)
+                lut.argb(argb, i, out, dst, 128);
+        }
+    }
+
+    // 把 [0, height) 行二分成行带 fork 出去，每个子任务只写 out 里自己那几行（同一行落在各块里的 128 字节段），
+    // 不需要合并。只有当前线程已经在 fork/join 池里时才拆分，否则在调用线程上顺序做。
+    // 多核上的加速比还没测过，RowBandsBenchmark 按线程数跑，MIN_BAND_PIXELS 也要等那份数据再定
+    static final class RowBands extends RecursiveAction {
+        interface Body {
+            void rows(int y0, int y1);
+        }
+
+        // 每个子任务至少这么多像素，太碎的话 fork 开销会盖过查表本身
+        static final int MIN_BAND_PIXELS = 32768;
+
+        private final Body body;
+        private final int y0;
+        private final int y1;
+        private final int minRows;
+
+        private RowBands(Body body, int y0, int y1, int minRows) {
+            this.body = body;
+            this.y0 = y0;
+            this.y1 = y1;
+            this.minRows = minRows;
+        }
+
+        static void run(int width, int height, Body body) {
+            int minRows = Math.max(1, MIN_BAND_PIXELS / Math.max(1, width));
+            if (height <= minRows || !ForkJoinTask.inForkJoinPool() || ForkJoinTask.getPool().getParallelism() < 2) {
+                body.rows(0, height);
+                return;
+            }
+            new RowBands(body, 0, height, minRows).invoke();
+        }
+
+        @Override
+        protected void compute() {
+            if (y1 - y0 <= minRows) {
+                body.rows(y0, y1);
+                return;
+            }
+            int mid = (y0 + y1) >>> 1;
+            invokeAll(new RowBands(body, y0, mid, minRows), new RowBands(body, mid, y1, minRows));
         }
-        return out;
     }
 
-    private byte[] readJsonLinear(File file, int expectedWidth, int expectedHeight, byte[] lut) throws IOException {
+    private byte[] readJsonTiles(File file, int expectedWidth, int expectedHeight, ColorLut lut, byte[] out)
+            throws IOException {
         try (Reader r = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
             JsonArray arr = JsonParser.parseReader(r).getAsJsonArray();
             int h = arr.size();
@@ -152,8 +223,8 @@ class FrameSourceLoader {
             if (w != expectedWidth || h != expectedHeight)
                 throw new IOException("frame size mismatch: " + w + "x" + h);
 
-            byte[] out = new byte[w * h];
-            int pos = 0;
+            int cols = w / 128;
+            out = frameBuffer(out, w * h);
             for (int y = 0; y < h; y++) {
                 JsonElement rowElem = arr.get(y);
                 if (!rowElem.isJsonArray())
@@ -162,7 +233,7 @@ class FrameSourceLoader {
                 if (row.size() != w)
                     throw new IOException("bad row width @y=" + y);
                 for (int x = 0; x < w; x++) {
-                    out[pos++] = resolvePixel(row.get(x), lut);
+                    out[PaletteFrame.index(x, y, cols)] = resolvePixel(row.get(x), lut);
                 }
             }
             return out;
@@ -171,16 +242,28 @@ class FrameSourceLoader {
         }
     }
 
-    private byte[] readSmrfLinear(File file, int expectedBytes) throws IOException {
+    // smrf 文件本身是整屏行优先，按 128 字节一段直接读进对应的块
+    private byte[] readSmrfTiles(File file, int width, int height, byte[] out) throws IOException {
+        int expectedBytes = width * height;
+        int cols = width / 128;
+        out = frameBuffer(out, expectedBytes);
+        int got = 0;
         try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
-            byte[] buf = in.readNBytes(expectedBytes);
-            if (buf.length != expectedBytes)
-                throw new IOException("smrf length mismatch: got=" + buf.length + " need=" + expectedBytes);
-            return buf;
+            for (int y = 0; y < height; y++) {
+                int dst = PaletteFrame.index(0, y, cols);
+                for (int c = 0; c < cols; c++, dst += PaletteFrame.TILE_BYTES) {
+                    int n = in.readNBytes(out, dst, 128);
+                    got += n;
+                    if (n != 128)
+                        throw new IOException("smrf length mismatch: got=" + got + " need=" + expectedBytes);
+                }
+            }
         }
+        return out;
     }
 
-    private byte[] readImageLinear(File file, int expectedWidth, int expectedHeight, byte[] lut) throws IOException {
+    private byte[] readImageTiles(File file, int expectedWidth, int expectedHeight, ColorLut lut, byte[] out)
+            throws IOException {
         if (lut == null)
             throw new IOException("LUT not loaded; put colormap.lut under plugins/MapFramePlayer/");
         BufferedImage img = ImageIO.read(file);
@@ -191,19 +274,20 @@ class FrameSourceLoader {
                 : resizeImage(img, expectedWidth, expectedHeight);
 
         int[] rgb = scaled.getRGB(0, 0, expectedWidth, expectedHeight, null, 0, expectedWidth);
-        byte[] out = new byte[expectedWidth * expectedHeight];
-        for (int i = 0; i < rgb.length; i++) {
-            int p = rgb[i];
-            int r = (p >>> 16) & 0xFF;
-            int g = (p >>> 8) & 0xFF;
-            int b = p & 0xFF;
-            int key = (r << 16) | (g << 8) | b;
-            out[i] = lut[key];
-        }
+        byte[] dst = frameBuffer(out, expectedWidth * expectedHeight);
+        RowBands.run(expectedWidth, expectedHeight, (y0, y1) -> argbRows(rgb, expectedWidth, lut, dst, y0, y1));
+        return dst;
+    }
+
+    private static byte[] frameBuffer(byte[] out, int bytes) throws IOException {
+        if (out == null)
+            return new byte[bytes];
+        if (out.length != bytes)
+            throw new IOException("frame buffer size mismatch: " + out.length + " need=" + bytes);
         return out;
     }
 
-    private byte resolvePixel(JsonElement elem, byte[] lut) throws IOException {
+    private byte resolvePixel(JsonElement elem, ColorLut lut) throws IOException {
         if (elem == null || elem.isJsonNull())
             return 0;
         if (elem.isJsonPrimitive())
@@ -228,7 +312,7 @@ class FrameSourceLoader {
         throw new IOException("unsupported primitive: " + prim);
     }
 
-    private byte arrayToByte(JsonArray arr, byte[] lut) throws IOException {
+    private byte arrayToByte(JsonArray arr, ColorLut lut) throws IOException {
         if (arr.size() == 0)
             return 0;
         if (arr.size() == 1)
@@ -238,7 +322,7 @@ class FrameSourceLoader {
         return resolvePixel(arr.get(0), lut);
     }
 
-    private byte objectToByte(JsonObject obj, byte[] lut) throws IOException {
+    private byte objectToByte(JsonObject obj, ColorLut lut) throws IOException {
         if (obj.has("index"))
             return resolvePixel(obj.get("index"), lut);
         if (obj.has("value"))
@@ -260,7 +344,7 @@ class FrameSourceLoader {
         throw new IOException("unsupported pixel object keys: " + obj.keySet());
     }
 
-    private byte rgbToPalette(JsonArray arr, byte[] lut) throws IOException {
+    private byte rgbToPalette(JsonArray arr, ColorLut lut) throws IOException {
         if (arr.size() < 3)
             throw new IOException("rgb array must have >=3 elements");
         int r = channelValue(arr.get(0));
@@ -269,11 +353,11 @@ class FrameSourceLoader {
         return rgbToPalette(r, g, b, lut);
     }
 
-    private byte rgbToPalette(int r, int g, int b, byte[] lut) throws IOException {
+    private byte rgbToPalette(int r, int g, int b, ColorLut lut) throws IOException {
         if (lut == null)
             throw new IOException("LUT not loaded; cannot convert RGB");
         int key = ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
-        return lut[key];
+        return lut.lookup(key);
     }
 
     private int channelValue(JsonElement elem) throws IOException {
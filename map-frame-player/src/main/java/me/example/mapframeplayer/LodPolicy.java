@@ -0,0 +1,92 @@
+package me.example.mapframeplayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+// 按距离分档限帧：lod.bands 形如 ["16:20", "48:10", "*:1"]，即 <最大距离>:<最高fps>，
+// 超过所有档位距离的玩家按最后一档；列表为空时不限帧
+class LodPolicy {
+    private final double[] maxDistSq;
+    private final double[] maxFps;
+    private volatile double sourceFps = 20.0;
+
+    private LodPolicy(double[] maxDistSq, double[] maxFps) {
+        this.maxDistSq = maxDistSq;
+        this.maxFps = maxFps;
+    }
+
+    static LodPolicy parse(List<String> specs, Logger logger) {
+        List<double[]> bands = new ArrayList<>();
+        if (specs != null) {
+            for (String spec : specs) {
+                String[] parts = spec == null ? new String[0] : spec.trim().split(":");
+                try {
+                    if (parts.length != 2)
+                        throw new NumberFormatException("expected <distance>:<fps>");
+                    String d = parts[0].trim();
+                    double dist = (d.equals("*") || d.isEmpty()) ? Double.POSITIVE_INFINITY : Double.parseDouble(d);
+                    double fps = Double.parseDouble(parts[1].trim());
+                    if (dist <= 0 || fps <= 0)
+                        throw new NumberFormatException("distance and fps must be > 0");
+                    bands.add(new double[] { dist, fps });
+                } catch (NumberFormatException e) {
+                    logger.warning("[mplay] ignoring lod band '" + spec + "': " + e.getMessage());
+                }
+            }
+        }
+        bands.sort((a, b) -> Double.compare(a[0], b[0]));
+        double[] distSq = new double[bands.size()];
+        double[] fps = new double[bands.size()];
+        for (int i = 0; i < bands.size(); i++) {
+            distSq[i] = bands.get(i)[0] * bands.get(i)[0];
+            fps[i] = bands.get(i)[1];
+        }
+        return new LodPolicy(distSq, fps);
+    }
+
+    // 每个屏幕一份，源帧率各自不同
+    LodPolicy copy() {
+        return new LodPolicy(maxDistSq, maxFps);
+    }
+
+    boolean enabled() {
+        return maxFps.length > 0;
+    }
+
+    void setSourceFps(double fps) {
+        this.sourceFps = fps > 0 ? fps : 20.0;
+    }
+
+    // 该距离的玩家每 N 个 epoch 才更新一次；1 = 全速
+    int divisor(double distSq) {
+        if (maxFps.length == 0)
+            return 1;
+        int band = maxFps.length - 1;
+        for (int i = 0; i < maxDistSq.length; i++) {
+            if (distSq <= maxDistSq[i]) {
+                band = i;
+                break;
+            }
+        }
+        double fps = maxFps[band];
+        if (fps >= sourceFps)
+            return 1;
+        return (int) Math.ceil(sourceFps / fps);
+    }
+
+    String describe() {
+        if (maxFps.length == 0)
+            return "off";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < maxFps.length; i++) {
+            if (i > 0)
+                sb.append(',');
+            double d = Math.sqrt(maxDistSq[i]);
+            sb.append(Double.isInfinite(d) ? "*" : String.format(Locale.US, "%.0f", d))
+                    .append(':').append(String.format(Locale.US, "%.0f", maxFps[i]));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,160 @@
+package me.example.mapframeplayer;
+
+import org.bukkit.map.MapPalette;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+// 没有 colormap.lut 时在插件里生成完整 LUT（与 prepare_colormap.py 相同：OKLab 最近色，跳过透明色 0..3）。
+// 调色板来自数据目录下的 palette.csv（index,r,g,b），没有就用服务端 MapPalette。
+// 结果按"调色板 + 算法版本"的哈希缓存在 lut-cache/ 下，之后启动直接映射缓存文件。
+final class LutBuilder {
+    // 改了匹配规则就改这个，旧缓存自动失效
+    private static final String ALGORITHM = "oklab-nearest-v1";
+
+    private LutBuilder() {
+    }
+
+    // 调色板索引 -> 0xRRGGBB；透明色和没有的索引为 -1
+    static int[] loadPalette(File dataFolder) throws IOException {
+        File csv = new File(dataFolder, "palette.csv");
+        if (csv.isFile())
+            return readPaletteCsv(csv);
+        return bukkitPalette();
+    }
+
+    static String describeSource(File dataFolder) {
+        return new File(dataFolder, "palette.csv").isFile() ? "palette.csv" : "MapPalette";
+    }
+
+    // 返回缓存的完整 LUT 文件；没有就并行生成并写入（先写临时文件再改名，已映射的旧文件不受影响）
+    static File cachedOrBuild(File dataFolder, int[] palette, Logger logger) throws IOException {
+        File cached = cacheFile(dataFolder, palette);
+        File dir = cached.getParentFile();
+        if (isCached(dataFolder, palette))
+            return cached;
+
+        logger.info("[mplay] building colormap LUT on " + (ForkJoinPool.getCommonPoolParallelism() + 1)
+                + " threads (first start only)...");
+        long t0 = System.nanoTime();
+        byte[] lut = build(palette);
+        logger.info(String.format("[mplay] colormap LUT built in %.1f s", (System.nanoTime() - t0) / 1e9));
+
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("failed to create " + dir.getAbsolutePath());
+        File tmp = new File(dir, cached.getName() + ".tmp");
+        Files.write(tmp.toPath(), lut);
+        Files.move(tmp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // 调色板变了以后旧缓存没用了
+        File[] stale = dir.listFiles((d, name) -> name.startsWith("colormap-") && !name.equals(cached.getName()));
+        if (stale != null) {
+            for (File f : stale) {
+                if (!f.delete())
+                    logger.warning("[mplay] failed to delete stale LUT cache " + f.getName());
+            }
+        }
+        return cached;
+    }
+
+    // 按 R 分 256 片并行（公共 fork/join 池，启动时机器上通常没别的活）；每个颜色用 OklabPalette 的剪枝搜索
+    static byte[] build(int[] palette) {
+        OklabPalette pal = new OklabPalette(palette);
+        byte[] lut = new byte[ColorLut.FULL_SIZE];
+        IntStream.range(0, 256).parallel().forEach(r -> {
+            float[] px = new float[3];
+            int base = r << 16;
+            for (int gb = 0; gb < 65536; gb++) {
+                ColorLut.Oklab.fromRgb(base | gb, px, 0);
+                lut[base | gb] = (byte) pal.nearest(px[0], px[1], px[2]);
+            }
+        });
+        return lut;
+    }
+
+    static boolean isCached(File dataFolder, int[] palette) {
+        File cached = cacheFile(dataFolder, palette);
+        return cached.isFile() && cached.length() == ColorLut.FULL_SIZE;
+    }
+
+    private static File cacheFile(File dataFolder, int[] palette) {
+        return new File(new File(dataFolder, "lut-cache"), "colormap-" + paletteHash(palette) + ".lut");
+    }
+
+    static String paletteHash(int[] palette) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(ALGORITHM.getBytes(StandardCharsets.US_ASCII));
+            for (int i = OklabPalette.FIRST_COLOR; i < palette.length; i++) {
+                int v = palette[i];
+                md.update(new byte[] {(byte) i, (byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v});
+            }
+            byte[] d = md.digest();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++)
+                sb.append(String.format("%02x", d[i] & 0xFF));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int[] readPaletteCsv(File csv) throws IOException {
+        int[] rgb = new int[256];
+        Arrays.fill(rgb, -1);
+        List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+        for (int ln = 0; ln < lines.size(); ln++) {
+            String line = lines.get(ln).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] f = line.split(",");
+            if (f.length < 4)
+                throw new IOException("palette.csv line " + (ln + 1) + ": expected index,r,g,b");
+            int i, r, g, b;
+            try {
+                i = Integer.parseInt(f[0].trim());
+                r = Integer.parseInt(f[1].trim());
+                g = Integer.parseInt(f[2].trim());
+                b = Integer.parseInt(f[3].trim());
+            } catch (NumberFormatException e) {
+                // 表头
+                if (ln == 0)
+                    continue;
+                throw new IOException("palette.csv line " + (ln + 1) + ": " + e.getMessage());
+            }
+            if (i < 0 || i > 255 || (r | g | b) < 0 || r > 255 || g > 255 || b > 255)
+                throw new IOException("palette.csv line " + (ln + 1) + ": value out of range");
+            if (i >= OklabPalette.FIRST_COLOR)
+                rgb[i] = (r << 16) | (g << 8) | b;
+        }
+        return rgb;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int[] bukkitPalette() {
+        int[] rgb = new int[256];
+        for (int i = 0; i < 256; i++) {
+            rgb[i] = -1;
+            if (i < OklabPalette.FIRST_COLOR)
+                continue;
+            try {
+                Color c = MapPalette.getColor((byte) i);
+                if (c != null)
+                    rgb[i] = c.getRGB() & 0xFFFFFF;
+            } catch (RuntimeException ignore) {
+                // 超出本版本调色板的索引
+            }
+        }
+        return rgb;
+    }
+}
@@ -16,9 +16,8 @@ import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.Bukkit;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.List;
 import java.util.Locale;
@@ -39,18 +38,95 @@ public class MapFramePlayer extends JavaPlugin implements CommandExecutor {
 
     private final PlayerManager playerMgr = new PlayerManager();
     private final BindManager binds = new BindManager(this, playerMgr);
+    private boolean lutReloading = false;
+
+    // lut.* 配置，在主线程读好再交给（可能是异步的）加载过程
+    private static final class LutSettings {
+        final String engine;
+        final int bits;
+        final boolean refine;
+        final boolean vector;
+
+        LutSettings(String engine, int bits, boolean refine, boolean vector) {
+            this.engine = engine;
+            this.bits = bits;
+            this.refine = refine;
+            this.vector = vector;
+        }
+    }
+
+    private LutSettings lutSettings() {
+        return new LutSettings(
+                getConfig().getString("lut.engine", "table").toLowerCase(Locale.ROOT),
+                getConfig().getInt("lut.bits", 8),
+                getConfig().getBoolean("lut.refine-boundaries", false),
+                getConfig().getBoolean("lut.vector", true));
+    }
+
+    // 不读 config，可以在异步线程里调（/mplay lut reload）
+    private ColorLut loadLUTorFail(LutSettings cfg, int[] palette) throws IOException {
+        // direct：不用表，直接按调色板算最近色
+        if (cfg.engine.equals("direct"))
+            return DirectPaletteLut.create(palette, cfg.vector, getLogger());
+        if (!cfg.engine.equals("table"))
+            getLogger().warning("[mplay] unknown lut.engine '" + cfg.engine + "', using table");
 
-    private byte[] loadLUTorFail() throws IOException {
-        // 从插件数据目录读取：plugins/MapFramePlayer/colormap.lut
+        // plugins/MapFramePlayer/colormap.lut 存在时优先用它，否则从调色板生成（有缓存）；完整 LUT 只读映射，不进堆
         File lutFile = new File(getDataFolder(), "colormap.lut");
+        File source = lutFile;
         if (!lutFile.exists()) {
-            throw new FileNotFoundException("LUT not found: " + lutFile.getAbsolutePath());
+            getLogger().info("[mplay] colormap.lut not found, using " + LutBuilder.describeSource(getDataFolder()));
+            source = LutBuilder.cachedOrBuild(getDataFolder(), palette, getLogger());
         }
-        byte[] lut = Files.readAllBytes(lutFile.toPath());
-        if (lut.length != 256 * 256 * 256) {
-            throw new IOException("LUT size invalid: " + lut.length + " (expect 16777216 bytes)");
+        ColorLut full = ColorLut.map(source);
+        // lut.bits < 8 时从完整 LUT 生成缓存友好的精简表，映射随后交给 GC 释放
+        int bits = cfg.bits;
+        if (bits >= 8)
+            return full;
+        if (bits != 5 && bits != 6) {
+            getLogger().warning("[mplay] lut.bits must be 5, 6 or 8; using 6");
+            bits = 6;
         }
-        return lut;
+        return ColorLut.compact(full, bits, cfg.refine ? palette : null);
+    }
+
+    // 重新读配置，异步重建/重新映射 LUT，完成后回主线程替换；正在解码的帧用完旧表，下一帧起用新表
+    private void reloadLUT(CommandSender s) {
+        if (lutReloading) {
+            s.sendMessage(color("&cLUT 正在重新加载，请稍候。"));
+            return;
+        }
+        lutReloading = true;
+        reloadConfig();
+        LutSettings cfg = lutSettings();
+        s.sendMessage(color("&7Reloading LUT..."));
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            long t0 = System.nanoTime();
+            ColorLut lut = null;
+            int[] palette = null;
+            String error = null;
+            try {
+                palette = LutBuilder.loadPalette(getDataFolder());
+                lut = loadLUTorFail(cfg, palette);
+            } catch (IOException | RuntimeException e) {
+                error = e.getMessage();
+            }
+            long ms = (System.nanoTime() - t0) / 1_000_000L;
+            ColorLut loaded = lut;
+            int[] loadedPalette = palette;
+            String failure = error;
+            Bukkit.getScheduler().runTask(this, () -> {
+                lutReloading = false;
+                if (loaded == null) {
+                    getLogger().severe("Failed to reload colormap LUT: " + failure);
+                    s.sendMessage(color("&cLUT reload failed: " + failure));
+                    return;
+                }
+                binds.setLUT(loaded, loadedPalette);
+                getLogger().info("Reloaded colormap LUT (" + loaded.describe() + ") in " + ms + " ms.");
+                s.sendMessage(color("&aLUT reloaded: " + loaded.describe() + " (" + ms + " ms)"));
+            });
+        });
     }
 
     @Override
@@ -58,19 +134,49 @@ public class MapFramePlayer extends JavaPlugin implements CommandExecutor {
         // Ensure config defaults exist
         try {
             getConfig().addDefault("debug", false);
+            getConfig().addDefault("render.bulk-canvas-write", true);
+            getConfig().addDefault("render.shared-canvas", false);
+            getConfig().addDefault("buffer.off-heap", false);
+            getConfig().addDefault("buffer.max-total-mb", 0);
+            getConfig().addDefault("buffer.compression", "none");
+            getConfig().addDefault("decode.cpu-threads", 0);
+            getConfig().addDefault("decode.stop-timeout-ms", 500);
+            getConfig().addDefault("memory.pressure-threshold", 0.0);
+            getConfig().addDefault("lut.engine", "table");
+            getConfig().addDefault("lut.vector", true);
+            getConfig().addDefault("lut.bits", 8);
+            getConfig().addDefault("lut.refine-boundaries", false);
+            getConfig().addDefault("dither.mode", "none");
+            getConfig().addDefault("dither.amount", 12.0);
+            getConfig().addDefault("dither.wavefront", "auto");
+            getConfig().addDefault("publish.stagger-max-maps-per-tick", 0);
+            getConfig().addDefault("network.max-bytes-per-tick-per-player", 0);
+            getConfig().addDefault("network.max-maps-per-tick-per-player", 0);
+            getConfig().addDefault("lod.bands", new ArrayList<String>());
+            getConfig().addDefault("culling.enabled", false);
+            getConfig().addDefault("culling.view-cone-degrees", 75.0);
             getConfig().options().copyDefaults(true);
             saveConfig();
         } catch (Throwable ignore) {
         }
 
+        CanvasWriter.setBulkEnabled(getConfig().getBoolean("render.bulk-canvas-write", true));
+
         getCommand("mplay").setExecutor(this);
         getLogger().info("MapFramePlayer enabled.");
 
+        // 同步加载：下面恢复的屏幕马上要用 LUT。第一次启动没有缓存时要在主线程上现建，明确说一声
         try {
-            byte[] lut = loadLUTorFail();
-            binds.setLUT(lut);
-            getLogger().info("Loaded colormap.lut (" + lut.length + " bytes).");
-        } catch (IOException e) {
+            int[] palette = LutBuilder.loadPalette(getDataFolder());
+            LutSettings cfg = lutSettings();
+            if (!cfg.engine.equals("direct") && !new File(getDataFolder(), "colormap.lut").exists()
+                    && !LutBuilder.isCached(getDataFolder(), palette))
+                getLogger().warning("[mplay] no cached colormap LUT; building it on the main thread, "
+                        + "server startup is blocked until it finishes (first start only).");
+            ColorLut lut = loadLUTorFail(cfg, palette);
+            binds.setLUT(lut, palette);
+            getLogger().info("Loaded colormap LUT (" + lut.describe() + ").");
+        } catch (IOException | RuntimeException e) {
             getLogger().severe("Failed to load colormap.lut: " + e.getMessage());
         }
 
@@ -235,7 +341,7 @@ public class MapFramePlayer extends JavaPlugin implements CommandExecutor {
                     int warmup = (idx < a.length) ? Integer.parseInt(a[idx++]) : 0;
 
                     if (!binds.isLutLoaded()) {
-                        s.sendMessage(color("&cLUT 未加载：请将 colormap.lut 放到 plugins/MapFramePlayer/ 下，再重试。"));
+                        s.sendMessage(color("&cLUT 未加载：请查看启动日志（colormap.lut / palette.csv），修好后重启插件。"));
                         return true;
                     }
 
@@ -290,6 +396,16 @@ public class MapFramePlayer extends JavaPlugin implements CommandExecutor {
                     s.sendMessage(color("&f" + binds.statusString(screenId)));
                     return true;
                 }
+                case "net": {
+                    List<String> lines = binds.listNetStats();
+                    if (lines.isEmpty()) {
+                        s.sendMessage(color("&7No map packets sent yet."));
+                        return true;
+                    }
+                    for (String line : lines)
+                        s.sendMessage(color("&f" + line));
+                    return true;
+                }
                 case "list": {
                     if (!binds.hasScreens()) {
                         s.sendMessage(color("&7No screens registered."));
@@ -410,7 +526,7 @@ public class MapFramePlayer extends JavaPlugin implements CommandExecutor {
                         bufferFrames = Integer.parseInt(a[idx++]);
 
                     if (!binds.isLutLoaded()) {
-                        s.sendMessage(color("&cLUT 未加载：请将 colormap.lut 放到 plugins/MapFramePlayer/ 下，再重试。"));
+                        s.sendMessage(color("&cLUT 未加载：请查看启动日志（colormap.lut / palette.csv），修好后重启插件。"));
                         return true;
                     }
                     if (!binds.isFfmpegAvailable()) {
@@ -431,6 +547,14 @@ public class MapFramePlayer extends JavaPlugin implements CommandExecutor {
                     binds.fetchBilibiliStream(name, roomId, s);
                     return true;
                 }
+                case "lut": {
+                    if (a.length < 2 || !a[1].equalsIgnoreCase("reload")) {
+                        s.sendMessage(color("&f/mplay lut reload"));
+                        return true;
+                    }
+                    reloadLUT(s);
+                    return true;
+                }
                 case "debug": {
                     if (a.length < 2) {
                         s.sendMessage(color("&f/mplay debug <true|false>"));
@@ -498,6 +622,7 @@ public class MapFramePlayer extends JavaPlugin implements CommandExecutor {
         s.sendMessage(color("&f/mplay set <id1,id2,...> <world> <cols> <rows> [radius] &7# 绑定现有地图"));
         s.sendMessage(color("&f/mplay list &7# 列出所有屏幕"));
         s.sendMessage(color("&f/mplay status [id <screenId>|all] &7# 查看状态"));
+        s.sendMessage(color("&f/mplay net &7# 每个玩家的地图发包统计"));
         s.sendMessage(color("&f/mplay clear [id <screenId>|all] &7# 清理并注销屏幕"));
         s.sendMessage(color("&f/mplay reset [id <screenId>] &7# 重置为黑屏"));
 
@@ -516,6 +641,7 @@ public class MapFramePlayer extends JavaPlugin implements CommandExecutor {
         s.sendMessage(color("&f/mplay bilibili <name> <roomId> &7# 解析并保存 m3u8"));
         s.sendMessage(color("&f/mplay live [id <screenId>] <m3u8OrName> [ticksPerFrame] [bufferFrames]"));
         s.sendMessage(color("&f/mplay debug <true|false>"));
+        s.sendMessage(color("&f/mplay lut reload &7# 重新加载 colormap.lut / palette.csv 和 lut.* 配置"));
 
         // 素材类型
         s.sendMessage(color(
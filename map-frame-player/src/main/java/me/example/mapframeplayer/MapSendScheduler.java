@@ -0,0 +1,127 @@
+package me.example.mapframeplayer;
+
+import org.bukkit.entity.Player;
+import org.bukkit.map.MapView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 每个玩家每 tick 的地图发包预算。各屏幕只登记"要给谁发哪张图"，
+ * 同一玩家同一张图未发出前再次登记会合并成一次；tick 结束时按优先级在预算内发送，剩下的顺延。
+ */
+class MapSendScheduler {
+    // Player#sendMap 总是发整张 128x128 颜色数据，再加上包头
+    static final int MAP_PACKET_BYTES = 128 * 128 + 16;
+
+    private final int bytesPerTick;
+    private final int packetsPerTick;
+    private final Map<UUID, Viewer> viewers = new HashMap<>();
+
+    MapSendScheduler(int bytesPerTick, int packetsPerTick) {
+        this.bytesPerTick = bytesPerTick;
+        this.packetsPerTick = packetsPerTick;
+    }
+
+    // distanceSq: 玩家到屏幕中心距离平方，0 表示立即需要（如进服刷新）；changedRatio: 本帧变化像素占比 0..1
+    void enqueue(Player player, MapView view, double distanceSq, double changedRatio, long tick) {
+        Viewer viewer = viewers.computeIfAbsent(player.getUniqueId(), id -> new Viewer());
+        viewer.player = player;
+        double priority = Math.max(0.0, distanceSq) / (0.25 + Math.max(0.0, Math.min(1.0, changedRatio)));
+        Request prev = viewer.pending.get(view.getId());
+        if (prev != null) {
+            prev.view = view;
+            prev.priority = Math.min(prev.priority, priority);
+            viewer.coalesced++;
+            return;
+        }
+        Request req = new Request();
+        req.view = view;
+        req.priority = priority;
+        req.enqueuedTick = tick;
+        viewer.pending.put(view.getId(), req);
+    }
+
+    void flush(long tick) {
+        for (Viewer viewer : viewers.values()) {
+            if (viewer.pending.isEmpty())
+                continue;
+            Player p = viewer.player;
+            if (p == null || !p.isOnline()) {
+                viewer.pending.clear();
+                continue;
+            }
+
+            List<Request> queue = new ArrayList<>(viewer.pending.values());
+            if (isLimited() && queue.size() > 1) {
+                // 等得越久优先级越高，避免远处的屏幕一直饿着
+                queue.sort((a, b) -> Double.compare(
+                        a.priority / (1 + tick - a.enqueuedTick),
+                        b.priority / (1 + tick - b.enqueuedTick)));
+            }
+
+            int bytes = 0;
+            int packets = 0;
+            for (Request req : queue) {
+                if (packets > 0 && overBudget(bytes + MAP_PACKET_BYTES, packets + 1))
+                    break;
+                p.sendMap(req.view);
+                viewer.pending.remove(req.view.getId());
+                bytes += MAP_PACKET_BYTES;
+                packets++;
+            }
+            viewer.bytesSent += bytes;
+            viewer.packetsSent += packets;
+            viewer.packetsDeferred += viewer.pending.size();
+        }
+    }
+
+    void forget(UUID playerId) {
+        if (playerId != null)
+            viewers.remove(playerId);
+    }
+
+    void clear() {
+        viewers.clear();
+    }
+
+    List<String> describe() {
+        List<String> out = new ArrayList<>();
+        for (Viewer viewer : viewers.values()) {
+            if (viewer.player == null)
+                continue;
+            out.add(String.format(Locale.US, "%s: sent=%d packets %.1f KB deferred=%d coalesced=%d queued=%d",
+                    viewer.player.getName(), viewer.packetsSent, viewer.bytesSent / 1024.0,
+                    viewer.packetsDeferred, viewer.coalesced, viewer.pending.size()));
+        }
+        return out;
+    }
+
+    private boolean isLimited() {
+        return bytesPerTick > 0 || packetsPerTick > 0;
+    }
+
+    private boolean overBudget(int bytes, int packets) {
+        return (bytesPerTick > 0 && bytes > bytesPerTick) || (packetsPerTick > 0 && packets > packetsPerTick);
+    }
+
+    private static final class Viewer {
+        Player player;
+        final LinkedHashMap<Integer, Request> pending = new LinkedHashMap<>();
+        long bytesSent;
+        long packetsSent;
+        long packetsDeferred;
+        long coalesced;
+    }
+
+    private static final class Request {
+        MapView view;
+        double priority;
+        long enqueuedTick;
+    }
+}
@@ -0,0 +1,82 @@
+package me.example.mapframeplayer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// 堆内存压力检测（memory.pressure-threshold，默认 0 = 关闭）：主线程 poll() 时读各堆内存池
+// GC 后的占用（getCollectionUsage），超过阈值进入压力状态，回落到 clearRatio 以下恢复。
+// 只读不写：不碰 JVM 全局的 CollectionUsageThreshold，其他插件/监控代理设在同一批 MXBean 上的阈值不受影响。
+class MemoryPressure {
+    private final double threshold;
+    private final double clearRatio;
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    private boolean active = false;
+
+    MemoryPressure(double threshold) {
+        this.threshold = threshold;
+        this.clearRatio = Math.max(0.0, threshold - 0.10);
+    }
+
+    // 返回 false 表示没有可用的内存池（或已关闭）
+    boolean start() {
+        if (threshold <= 0 || threshold >= 1)
+            return false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported())
+                continue;
+            if (pool.getUsage().getMax() <= 0)
+                continue;
+            pools.add(pool);
+        }
+        return !pools.isEmpty();
+    }
+
+    void stop() {
+        pools.clear();
+        active = false;
+    }
+
+    // 主线程：1 = 刚进入压力状态，-1 = 刚恢复，0 = 没变化
+    int poll() {
+        if (pools.isEmpty())
+            return 0;
+        double used = usedRatio();
+        if (!active) {
+            if (used < threshold)
+                return 0;
+            active = true;
+            return 1;
+        }
+        if (used < clearRatio) {
+            active = false;
+            return -1;
+        }
+        return 0;
+    }
+
+    boolean active() {
+        return active;
+    }
+
+    // 各池 GC 后占用比例的最大值
+    double usedRatio() {
+        double worst = 0.0;
+        for (MemoryPoolMXBean pool : pools) {
+            MemoryUsage u = pool.getCollectionUsage();
+            if (u == null || u.getMax() <= 0)
+                continue;
+            worst = Math.max(worst, (double) u.getUsed() / u.getMax());
+        }
+        return worst;
+    }
+
+    String describe() {
+        return String.format(Locale.US, "%.0f%% of heap after GC (threshold %.0f%%)",
+                usedRatio() * 100.0, threshold * 100.0);
+    }
+}
@@ -0,0 +1,108 @@
+package me.example.mapframeplayer;
+
+import java.util.Arrays;
+
+// 调色板的 OKLab 坐标，SoA 布局，两份顺序：
+//   按 L 排序 - 标量最近色搜索从 L 最接近的颜色向两边找，|dL|^2 超过当前最优就停
+//   按索引    - 向量内核逐个颜色扫过去，严格小于才替换，自然就是"距离相同取索引小的"
+// 两种顺序的结果都与 prepare_colormap.py 的 argmin 一致。透明色 0..3 不参与。
+final class OklabPalette {
+    static final int FIRST_COLOR = 4;
+
+    final int size;
+    final float[] sortedL;
+    final float[] sortedA;
+    final float[] sortedB;
+    final int[] sortedIndex;
+    final float[] l;
+    final float[] a;
+    final float[] b;
+    final int[] index;
+
+    // paletteRgb：索引 -> 0xRRGGBB，没有的颜色为 -1
+    OklabPalette(int[] paletteRgb) {
+        float[][] entries = new float[256][];
+        float[] lab = new float[3];
+        int n = 0;
+        for (int i = FIRST_COLOR; i < Math.min(256, paletteRgb.length); i++) {
+            if (paletteRgb[i] < 0)
+                continue;
+            ColorLut.Oklab.fromRgb(paletteRgb[i], lab, 0);
+            entries[n++] = new float[] {lab[0], lab[1], lab[2], i};
+        }
+        if (n == 0)
+            throw new IllegalArgumentException("palette has no usable colors");
+        this.size = n;
+        this.l = new float[n];
+        this.a = new float[n];
+        this.b = new float[n];
+        this.index = new int[n];
+        fill(entries, l, a, b, index);
+
+        float[][] sorted = Arrays.copyOf(entries, n);
+        Arrays.sort(sorted, (x, y) -> x[0] != y[0] ? Float.compare(x[0], y[0]) : Float.compare(x[3], y[3]));
+        this.sortedL = new float[n];
+        this.sortedA = new float[n];
+        this.sortedB = new float[n];
+        this.sortedIndex = new int[n];
+        fill(sorted, sortedL, sortedA, sortedB, sortedIndex);
+    }
+
+    private static void fill(float[][] src, float[] l, float[] a, float[] b, int[] index) {
+        for (int i = 0; i < l.length; i++) {
+            l[i] = src[i][0];
+            a[i] = src[i][1];
+            b[i] = src[i][2];
+            index[i] = (int) src[i][3];
+        }
+    }
+
+    // 标量最近色，返回调色板索引
+    int nearest(float pl, float pa, float pb) {
+        float[] ls = sortedL;
+        int n = size;
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ls[mid] < pl)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        float best = Float.MAX_VALUE;
+        int bestIdx = Integer.MAX_VALUE;
+        int down = lo - 1, up = lo;
+        while (down >= 0 || up < n) {
+            if (up < n) {
+                float dl = ls[up] - pl;
+                if (dl * dl > best) {
+                    up = n;
+                } else {
+                    float da = sortedA[up] - pa, db = sortedB[up] - pb;
+                    float d = dl * dl + da * da + db * db;
+                    // 距离相同取索引小的，与 numpy argmin 一致
+                    if (d < best || (d == best && sortedIndex[up] < bestIdx)) {
+                        best = d;
+                        bestIdx = sortedIndex[up];
+                    }
+                    up++;
+                }
+            }
+            if (down >= 0) {
+                float dl = pl - ls[down];
+                if (dl * dl > best) {
+                    down = -1;
+                } else {
+                    float da = sortedA[down] - pa, db = sortedB[down] - pb;
+                    float d = dl * dl + da * da + db * db;
+                    if (d < best || (d == best && sortedIndex[down] < bestIdx)) {
+                        best = d;
+                        bestIdx = sortedIndex[down];
+                    }
+                    down--;
+                }
+            }
+        }
+        return bestIdx;
+    }
+}
@@ -0,0 +1,72 @@
+package me.example.mapframeplayer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+// 一帧调色板像素，按地图分块存放（tile-major）：第 i 张地图（Binding 顺序）占
+// [i*TILE_BYTES, (i+1)*TILE_BYTES)，块内是 128x128 行优先。解码时直接写成这种布局，
+// 发布时各 renderer 直接引用自己的那一块，不再切片拷贝
+class PaletteFrame {
+    static final int TILE_BYTES = 128 * 128;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    final byte[] pixels;
+    final int cols;
+    final int rows;
+    // 每张地图一个哈希（Binding 顺序），解码线程算好，主线程只比较
+    final long[] tileHashes;
+
+    // pixels 为 null 时是 FrameArena.Slot（像素在堆外）
+    PaletteFrame(byte[] pixels, int cols, int rows, long[] tileHashes) {
+        this.pixels = pixels;
+        this.cols = cols;
+        this.rows = rows;
+        this.tileHashes = tileHashes;
+    }
+
+    // 给 FramePool 用：空帧，填好像素后调 rehash()
+    PaletteFrame(int cols, int rows) {
+        this(new byte[cols * rows * TILE_BYTES], cols, rows, new long[cols * rows]);
+    }
+
+    static PaletteFrame hashed(byte[] tiles, int cols, int rows) {
+        PaletteFrame f = new PaletteFrame(tiles, cols, rows, new long[cols * rows]);
+        f.rehash();
+        return f;
+    }
+
+    PaletteFrame rehash() {
+        for (int i = 0; i < tileHashes.length; i++)
+            tileHashes[i] = hashTile(pixels, tileOffset(i));
+        return this;
+    }
+
+    static int tileOffset(int tile) {
+        return tile * TILE_BYTES;
+    }
+
+    // 整屏坐标 (x, y) 在 tile-major 数组里的下标
+    static int index(int x, int y, int cols) {
+        return ((((y >> 7) * cols) + (x >> 7)) << 14) + ((y & 127) << 7) + (x & 127);
+    }
+
+    private static long hashTile(byte[] src, int off) {
+        long h = 0x27D4EB2F165667C5L;
+        for (int i = off, end = off + TILE_BYTES; i < end; i += 8) {
+            long k = (long) LONGS.get(src, i);
+            k *= 0x87C37B91114253D5L;
+            k = Long.rotateLeft(k, 31);
+            k *= 0x4CF5AD432745937FL;
+            h ^= k;
+            h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
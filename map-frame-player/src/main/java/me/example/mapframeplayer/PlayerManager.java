@@ -1,20 +1,135 @@
 package me.example.mapframeplayer;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 class PlayerManager {
-    Map<World, List<Player>> snapshotOnlineByWorld() {
-        Map<World, List<Player>> m = new IdentityHashMap<>();
+    // 按区块(16x16)分格的在线玩家索引，每 tick 最多重建一次
+    private static final int CELL_SHIFT = 4;
+
+    static final class Tracked {
+        final Player player;
+        final Location loc = new Location(null, 0, 0, 0);
+        double x, y, z;
+        long seenTick;
+
+        Tracked(Player player) {
+            this.player = player;
+        }
+    }
+
+    private static final class WorldIndex {
+        final List<Tracked> all = new ArrayList<>();
+        final Map<Long, List<Tracked>> cells = new HashMap<>();
+    }
+
+    private final Map<UUID, Tracked> tracked = new HashMap<>();
+    private final Map<World, WorldIndex> worlds = new IdentityHashMap<>();
+    private long indexedTick = Long.MIN_VALUE;
+
+    // 把 center 周围 radius 内（radius<=0 表示整个世界）的玩家放进 out，返回个数
+    int collectNearby(World world, double cx, double cy, double cz, double radius, List<Tracked> out) {
+        out.clear();
+        ensureIndexed(MapFramePlayer.TICK);
+        WorldIndex idx = worlds.get(world);
+        if (idx == null)
+            return 0;
+        if (radius <= 0) {
+            out.addAll(idx.all);
+            return out.size();
+        }
+
+        double r2 = radius * radius;
+        int minCx = (int) Math.floor(cx - radius) >> CELL_SHIFT;
+        int maxCx = (int) Math.floor(cx + radius) >> CELL_SHIFT;
+        int minCz = (int) Math.floor(cz - radius) >> CELL_SHIFT;
+        int maxCz = (int) Math.floor(cz + radius) >> CELL_SHIFT;
+        // 半径很大时按格子扫反而更慢，直接扫全世界
+        if ((long) (maxCx - minCx + 1) * (maxCz - minCz + 1) > idx.all.size()) {
+            for (Tracked t : idx.all) {
+                if (distSq(t, cx, cy, cz) <= r2)
+                    out.add(t);
+            }
+            return out.size();
+        }
+        for (int gx = minCx; gx <= maxCx; gx++) {
+            for (int gz = minCz; gz <= maxCz; gz++) {
+                List<Tracked> cell = idx.cells.get(cellKey(gx, gz));
+                if (cell == null)
+                    continue;
+                for (Tracked t : cell) {
+                    if (distSq(t, cx, cy, cz) <= r2)
+                        out.add(t);
+                }
+            }
+        }
+        return out.size();
+    }
+
+    static double distSq(Tracked t, double cx, double cy, double cz) {
+        double dx = t.x - cx;
+        double dy = t.y - cy;
+        double dz = t.z - cz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    void forget(UUID playerId) {
+        if (playerId != null && tracked.remove(playerId) != null)
+            indexedTick = Long.MIN_VALUE;
+    }
+
+    private void ensureIndexed(long tick) {
+        if (indexedTick == tick)
+            return;
+        indexedTick = tick;
+
+        for (WorldIndex idx : worlds.values()) {
+            idx.all.clear();
+            for (List<Tracked> cell : idx.cells.values())
+                cell.clear();
+        }
         for (Player p : Bukkit.getOnlinePlayers()) {
-            m.computeIfAbsent(p.getWorld(), w -> new ArrayList<>()).add(p);
+            Tracked t = tracked.computeIfAbsent(p.getUniqueId(), id -> new Tracked(p));
+            if (t.player != p) {
+                t = new Tracked(p);
+                tracked.put(p.getUniqueId(), t);
+            }
+            Location l = p.getLocation(t.loc);
+            t.x = l.getX();
+            t.y = l.getY();
+            t.z = l.getZ();
+            t.seenTick = tick;
+
+            WorldIndex idx = worlds.computeIfAbsent(p.getWorld(), w -> new WorldIndex());
+            idx.all.add(t);
+            long key = cellKey((int) Math.floor(t.x) >> CELL_SHIFT, (int) Math.floor(t.z) >> CELL_SHIFT);
+            idx.cells.computeIfAbsent(key, k -> new ArrayList<>()).add(t);
+        }
+
+        // 清掉已下线玩家和空格子，避免索引只增不减
+        tracked.values().removeIf(t -> t.seenTick != tick);
+        Iterator<WorldIndex> wit = worlds.values().iterator();
+        while (wit.hasNext()) {
+            WorldIndex idx = wit.next();
+            if (idx.all.isEmpty()) {
+                wit.remove();
+                continue;
+            }
+            idx.cells.values().removeIf(List::isEmpty);
         }
-        return m;
+    }
+
+    private static long cellKey(int gx, int gz) {
+        return ((long) gx << 32) | (gz & 0xFFFFFFFFL);
     }
 }
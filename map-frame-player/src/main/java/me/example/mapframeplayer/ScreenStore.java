@@ -36,6 +36,7 @@ class ScreenStore {
         Double centerX;
         Double centerY;
         Double centerZ;
+        String facing;
         List<Integer> mapIds;
         List<BlockPos> barriers;
         List<Vec3> frames;
@@ -0,0 +1,110 @@
+package me.example.mapframeplayer;
+
+import java.util.Arrays;
+
+// 玩家 UUID(两个 long) -> 已看到的 epoch；线性探测开放寻址，不装箱、查询不分配。
+// 只在主线程使用，不加锁。
+class SeenEpochs {
+    private long[] msbs;
+    private long[] lsbs;
+    private long[] epochs;
+    private boolean[] used;
+    private int size;
+
+    SeenEpochs() {
+        allocate(16);
+    }
+
+    long get(long msb, long lsb) {
+        int mask = used.length - 1;
+        for (int i = slot(msb, lsb, mask); used[i]; i = (i + 1) & mask) {
+            if (msbs[i] == msb && lsbs[i] == lsb)
+                return epochs[i];
+        }
+        return -1L;
+    }
+
+    void put(long msb, long lsb, long epoch) {
+        int mask = used.length - 1;
+        int i = slot(msb, lsb, mask);
+        while (used[i]) {
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                epochs[i] = epoch;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        msbs[i] = msb;
+        lsbs[i] = lsb;
+        epochs[i] = epoch;
+        if (++size * 2 > used.length)
+            rehash(used.length * 2);
+    }
+
+    void remove(long msb, long lsb) {
+        int mask = used.length - 1;
+        int i = slot(msb, lsb, mask);
+        while (used[i]) {
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                shiftBack(i, mask);
+                size--;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    void clear() {
+        if (size == 0)
+            return;
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // 删除后把后面同一探测链上的元素往前挪，保持查找不断链
+    private void shiftBack(int hole, int mask) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (!used[i])
+                break;
+            int home = slot(msbs[i], lsbs[i], mask);
+            boolean movable = (hole <= i) ? (home <= hole || home > i) : (home <= hole && home > i);
+            if (movable) {
+                msbs[hole] = msbs[i];
+                lsbs[hole] = lsbs[i];
+                epochs[hole] = epochs[i];
+                hole = i;
+            }
+        }
+        used[hole] = false;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldMsbs = msbs, oldLsbs = lsbs, oldEpochs = epochs;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i])
+                put(oldMsbs[i], oldLsbs[i], oldEpochs[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        epochs = new long[capacity];
+        used = new boolean[capacity];
+        size = 0;
+    }
+
+    private static int slot(long msb, long lsb, int mask) {
+        long h = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & mask;
+    }
+}
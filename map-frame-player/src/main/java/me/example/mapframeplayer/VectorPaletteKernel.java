@@ -0,0 +1,57 @@
+package me.example.mapframeplayer;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+// DirectPaletteLut 的 SIMD 内核（jdk.incubator.vector）。只在启动参数带了
+// --add-modules jdk.incubator.vector 时由 DirectPaletteLut 反射加载，其他类不能直接引用它。
+// 一次处理一组像素（每条 lane 一个像素），按索引顺序扫过整个调色板，严格小于才替换，
+// 距离相同时保留索引小的，和标量搜索 / 完整 LUT 的结果一致。
+final class VectorPaletteKernel implements DirectPaletteLut.Kernel {
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+
+    private final OklabPalette palette;
+
+    VectorPaletteKernel(OklabPalette palette) {
+        if (F.length() != I.length())
+            throw new IllegalStateException("float/int lane count mismatch");
+        this.palette = palette;
+    }
+
+    @Override
+    public void nearest(float[] l, float[] a, float[] b, int n, int[] out) {
+        float[] pl = palette.l;
+        float[] pa = palette.a;
+        float[] pb = palette.b;
+        int[] pidx = palette.index;
+        int colors = palette.size;
+        int i = 0;
+        for (int bound = F.loopBound(n); i < bound; i += F.length()) {
+            FloatVector vl = FloatVector.fromArray(F, l, i);
+            FloatVector va = FloatVector.fromArray(F, a, i);
+            FloatVector vb = FloatVector.fromArray(F, b, i);
+            FloatVector best = FloatVector.broadcast(F, Float.MAX_VALUE);
+            IntVector bestIdx = IntVector.zero(I);
+            for (int c = 0; c < colors; c++) {
+                FloatVector dl = vl.sub(pl[c]);
+                FloatVector da = va.sub(pa[c]);
+                FloatVector db = vb.sub(pb[c]);
+                FloatVector d = dl.mul(dl).add(da.mul(da)).add(db.mul(db));
+                VectorMask<Float> closer = d.lt(best);
+                best = best.blend(d, closer);
+                bestIdx = bestIdx.blend(pidx[c], closer.cast(I));
+            }
+            bestIdx.intoArray(out, i);
+        }
+        for (; i < n; i++)
+            out[i] = palette.nearest(l[i], a[i], b[i]);
+    }
+
+    @Override
+    public String describe() {
+        return "vector " + F.length() + " lanes";
+    }
+}
@@ -0,0 +1,122 @@
+package me.example.mapframeplayer;
+
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+// 一块屏幕本 tick 范围内的玩家：每 tick 由 ScreenSession 重算一次，
+// 所有 DataRenderer 和发包循环共用，不再各自对每张地图重复算距离。
+// 槽位是紧凑数组，UUID -> 槽位 用 SeenEpochs 存；只在主线程使用。
+class ViewerSet {
+    private Player[] players = new Player[8];
+    private double[] distSq = new double[8];
+    private int size;
+    private SeenEpochs slots = new SeenEpochs();
+
+    // 上一 tick 的集合，用来算进出
+    private Player[] prevPlayers = new Player[8];
+    private int prevSize;
+    private SeenEpochs prevSlots = new SeenEpochs();
+
+    private final List<Player> entered = new ArrayList<>();
+    private final List<UUID> left = new ArrayList<>();
+
+    // 背对屏幕/屏幕不在视野里的玩家，跨 tick 保留，由 ScreenSession 的视锥剔除维护。
+    // DataRenderer.render 对他们不画，画布停在旧 epoch，转回来时整屏补画
+    private final Set<UUID> culled = new HashSet<>();
+
+    void update(List<PlayerManager.Tracked> nearby, double cx, double cy, double cz) {
+        Player[] tp = prevPlayers;
+        prevPlayers = players;
+        players = tp;
+        prevSize = size;
+        SeenEpochs ts = prevSlots;
+        prevSlots = slots;
+        slots = ts;
+        slots.clear();
+        size = 0;
+        entered.clear();
+        left.clear();
+
+        int n = nearby.size();
+        // players 和 prevPlayers 每 tick 互换，两个数组长度可能不同；distSq 不换，单独按 n 扩
+        if (players.length < n)
+            players = new Player[Math.max(n, players.length * 2)];
+        if (distSq.length < n)
+            distSq = new double[Math.max(n, distSq.length * 2)];
+        for (int i = 0; i < n; i++) {
+            PlayerManager.Tracked t = nearby.get(i);
+            UUID id = t.player.getUniqueId();
+            long msb = id.getMostSignificantBits();
+            long lsb = id.getLeastSignificantBits();
+            players[size] = t.player;
+            distSq[size] = PlayerManager.distSq(t, cx, cy, cz);
+            slots.put(msb, lsb, size);
+            size++;
+            if (prevSlots.get(msb, lsb) < 0)
+                entered.add(t.player);
+        }
+        for (int i = 0; i < prevSize; i++) {
+            UUID id = prevPlayers[i].getUniqueId();
+            if (slots.get(id.getMostSignificantBits(), id.getLeastSignificantBits()) < 0)
+                left.add(id);
+            prevPlayers[i] = null;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    Player player(int slot) {
+        return players[slot];
+    }
+
+    double distSq(int slot) {
+        return distSq[slot];
+    }
+
+    // 不在集合里返回 -1
+    int slotOf(long msb, long lsb) {
+        return (int) slots.get(msb, lsb);
+    }
+
+    double distSqOf(UUID id) {
+        int slot = slotOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return slot < 0 ? -1 : distSq[slot];
+    }
+
+    Set<UUID> culled() {
+        return culled;
+    }
+
+    boolean isCulled(UUID id) {
+        return !culled.isEmpty() && culled.contains(id);
+    }
+
+    // 本 tick 新进入范围的玩家（含刚进服/换世界）
+    List<Player> entered() {
+        return entered;
+    }
+
+    // 本 tick 离开范围或下线的玩家
+    List<UUID> left() {
+        return left;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++)
+            players[i] = null;
+        size = 0;
+        prevSize = 0;
+        slots.clear();
+        prevSlots.clear();
+        entered.clear();
+        left.clear();
+        culled.clear();
+    }
+}
@@ -0,0 +1,96 @@
+package me.example.mapframeplayer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferBudgetTest {
+    private static final long GIB = 1L << 30;
+    private static final long WALL_16X9 = 16L * 9 * PaletteFrame.TILE_BYTES;
+    private static final long WALL_2X2 = 2L * 2 * PaletteFrame.TILE_BYTES;
+
+    private static long used(long[] frameBytes, int[] limits) {
+        long sum = 0;
+        for (int i = 0; i < limits.length; i++)
+            sum += frameBytes[i] * limits[i];
+        return sum;
+    }
+
+    // 1 GiB：三个 16x9 播放各要 240，一个 2x2 播放要 240，一个 16x9 直播要 30
+    @Test
+    void mixedWallExample() {
+        long[] bytes = {WALL_16X9, WALL_16X9, WALL_16X9, WALL_2X2, WALL_16X9};
+        int[] requested = {240, 240, 240, 240, 30};
+        boolean[] live = {false, false, false, false, true};
+
+        int[] limits = BufferBudget.allocate(GIB, bytes, requested, live);
+
+        // 按 单帧字节 x 模式 分：直播的 30 帧在它的份额内先拿满；剩下四个播放屏同一模式，
+        // 帧数相同（约 1 GiB 减去直播后 / 3 个半 16x9 帧 / 4 倍），2x2 只占它面积那一份字节
+        assertArrayEquals(new int[] {140, 140, 140, 140, 30}, limits);
+        assertTrue(used(bytes, limits) <= GIB);
+    }
+
+    @Test
+    void resultDoesNotDependOnScreenOrder() {
+        long[] bytes = {WALL_16X9, WALL_2X2, WALL_16X9, 6L * PaletteFrame.TILE_BYTES, WALL_16X9};
+        int[] requested = {240, 240, 30, 200, 240};
+        boolean[] live = {false, false, true, false, false};
+        int[] limits = BufferBudget.allocate(GIB / 2, bytes, requested, live);
+
+        int n = bytes.length;
+        long[] rb = new long[n];
+        int[] rr = new int[n];
+        boolean[] rl = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            rb[i] = bytes[n - 1 - i];
+            rr[i] = requested[n - 1 - i];
+            rl[i] = live[n - 1 - i];
+        }
+        int[] reversed = BufferBudget.allocate(GIB / 2, rb, rr, rl);
+        for (int i = 0; i < n; i++)
+            assertTrue(limits[i] == reversed[n - 1 - i], "screen " + i + ": " + limits[i] + " vs " + reversed[n - 1 - i]);
+    }
+
+    // 同一模式：字节份额与屏幕面积成正比，帧数相同
+    @Test
+    void sameModeScreensGetBytesProportionalToSize() {
+        long[] bytes = {WALL_16X9, WALL_2X2};
+        int[] requested = {10_000, 10_000};
+        boolean[] live = {false, false};
+        int[] limits = BufferBudget.allocate(GIB, bytes, requested, live);
+
+        int frames = (int) (GIB / (WALL_16X9 + WALL_2X2));
+        assertArrayEquals(new int[] {frames, frames}, limits);
+        assertTrue(used(bytes, limits) <= GIB);
+    }
+
+    // 同样大小时，播放屏分到的字节是直播屏的 PLAYBACK_WEIGHT / LIVE_WEIGHT 倍
+    @Test
+    void playbackGetsModeFactorMoreThanLive() {
+        long[] bytes = {WALL_2X2, WALL_2X2};
+        int[] requested = {10_000, 10_000};
+        boolean[] live = {false, true};
+        int[] limits = BufferBudget.allocate(GIB / 16, bytes, requested, live);
+
+        int total = BufferBudget.PLAYBACK_WEIGHT + BufferBudget.LIVE_WEIGHT;
+        double perWeight = (double) (GIB / 16 / WALL_2X2) / total;
+        assertArrayEquals(new int[] {(int) (perWeight * BufferBudget.PLAYBACK_WEIGHT),
+                (int) (perWeight * BufferBudget.LIVE_WEIGHT)}, limits);
+    }
+
+    @Test
+    void keepsMinimumFramesWhenBudgetIsTiny() {
+        int[] limits = BufferBudget.allocate(1024, new long[] {WALL_16X9, WALL_16X9},
+                new int[] {240, 30}, new boolean[] {false, true});
+        assertArrayEquals(new int[] {BufferBudget.MIN_FRAMES, BufferBudget.MIN_FRAMES}, limits);
+    }
+
+    @Test
+    void unlimitedBudgetReturnsRequests() {
+        int[] limits = BufferBudget.allocate(0, new long[] {WALL_16X9, WALL_2X2},
+                new int[] {240, 0}, new boolean[] {false, true});
+        assertArrayEquals(new int[] {240, 1}, limits);
+    }
+}
@@ -0,0 +1,45 @@
+package me.example.mapframeplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// 整块 128x128 写入画布：CanvasWriter 快路径 vs 逐像素 setPixel。两帧交替写，每次都是真的改动
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanvasWriterBenchmark {
+    private final RecordingMapCanvas canvas = new RecordingMapCanvas.WithBuffer();
+    private final byte[][] frames = new byte[2][PaletteFrame.TILE_BYTES];
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(42);
+        r.nextBytes(frames[0]);
+        r.nextBytes(frames[1]);
+    }
+
+    @Benchmark
+    public void bulk() {
+        CanvasWriter.write(canvas, frames[next ^= 1], 0, 0, 0, 127, 127);
+    }
+
+    @Benchmark
+    public void setPixelLoop() {
+        CanvasWriter.writePixels(canvas, frames[next ^= 1], 0, 0, 0, 127, 127);
+    }
+}
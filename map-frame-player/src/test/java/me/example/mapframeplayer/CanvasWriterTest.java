@@ -0,0 +1,99 @@
+package me.example.mapframeplayer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CanvasWriterTest {
+    // 两块的 tile-major 帧，写第二块，顺便覆盖 srcOff
+    private static final int OFF = PaletteFrame.TILE_BYTES;
+
+    @AfterEach
+    void restoreBulk() {
+        CanvasWriter.setBulkEnabled(true);
+    }
+
+    private static byte[] frame(long seed) {
+        byte[] src = new byte[2 * PaletteFrame.TILE_BYTES];
+        new Random(seed).nextBytes(src);
+        return src;
+    }
+
+    private static void assertRect(RecordingMapCanvas canvas, byte[] src, int x0, int y0, int x1, int y1) {
+        for (int y = 0; y < 128; y++) {
+            for (int x = 0; x < 128; x++) {
+                boolean inside = x >= x0 && x <= x1 && y >= y0 && y <= y1;
+                byte want = inside ? src[OFF + y * 128 + x] : 0;
+                assertEquals(want, canvas.getPixel(x, y), "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void bulkPathCopiesRectAndSetsBothCornersThroughSetPixel() {
+        RecordingMapCanvas.WithBuffer canvas = new RecordingMapCanvas.WithBuffer();
+        byte[] src = frame(1);
+        CanvasWriter.write(canvas, src, OFF, 10, 20, 70, 90);
+
+        assertRect(canvas, src, 10, 20, 70, 90);
+        assertEquals(2, canvas.setPixelCalls);
+        assertTrue(canvas.setPixelAt[20 * 128 + 10], "top-left corner not set through setPixel");
+        assertTrue(canvas.setPixelAt[90 * 128 + 70], "bottom-right corner not set through setPixel");
+        assertTrue(canvas.dirtyCovers(10, 20, 70, 90), "dirty region does not cover the rect");
+    }
+
+    @Test
+    void bulkPathMarksDirtyEvenWhenCornersAlreadyMatch() {
+        RecordingMapCanvas.WithBuffer canvas = new RecordingMapCanvas.WithBuffer();
+        byte[] src = frame(2);
+        CanvasWriter.write(canvas, src, OFF, 0, 0, 127, 127);
+        canvas.resetRecording();
+
+        // 画布已经是这一帧：角上的颜色没变，仍然要让 setPixel 看到变化
+        CanvasWriter.write(canvas, src, OFF, 0, 0, 127, 127);
+        assertEquals(2, canvas.setPixelCalls);
+        assertTrue(canvas.dirtyCovers(0, 0, 127, 127));
+    }
+
+    @Test
+    void singlePixelRect() {
+        RecordingMapCanvas.WithBuffer canvas = new RecordingMapCanvas.WithBuffer();
+        byte[] src = frame(3);
+        CanvasWriter.write(canvas, src, OFF, 5, 7, 5, 7);
+        assertRect(canvas, src, 5, 7, 5, 7);
+        assertTrue(canvas.dirtyCovers(5, 7, 5, 7));
+    }
+
+    @Test
+    void fallsBackToSetPixelWhenCanvasHasNoBufferField() {
+        RecordingMapCanvas.WithoutBuffer canvas = new RecordingMapCanvas.WithoutBuffer();
+        byte[] src = frame(4);
+        CanvasWriter.write(canvas, src, OFF, 3, 4, 40, 50);
+
+        assertRect(canvas, src, 3, 4, 40, 50);
+        assertEquals(38 * 47, canvas.setPixelCalls);
+    }
+
+    @Test
+    void fallsBackToSetPixelWhenBulkDisabled() {
+        CanvasWriter.setBulkEnabled(false);
+        RecordingMapCanvas.WithBuffer canvas = new RecordingMapCanvas.WithBuffer();
+        byte[] src = frame(5);
+        CanvasWriter.write(canvas, src, OFF, 0, 0, 127, 127);
+
+        assertRect(canvas, src, 0, 0, 127, 127);
+        assertEquals(128 * 128, canvas.setPixelCalls);
+    }
+
+    @Test
+    void emptyRectWritesNothing() {
+        RecordingMapCanvas.WithBuffer canvas = new RecordingMapCanvas.WithBuffer();
+        CanvasWriter.write(canvas, frame(6), OFF, 0, 0, -1, -1);
+        assertEquals(0, canvas.setPixelCalls);
+        assertRect(canvas, new byte[2 * PaletteFrame.TILE_BYTES], 0, 0, -1, -1);
+    }
+}
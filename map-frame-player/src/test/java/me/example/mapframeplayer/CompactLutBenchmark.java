@@ -0,0 +1,86 @@
+package me.example.mapframeplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// 16x9 墙一帧 rgb24 -> 调色板索引，单线程：完整 16 MB mmap 表 vs lut.bits=5/6（可选边界精修）。
+// 完整表用 LutBuilder 真算出来（248 个固定种子的随机颜色，和地图调色板一样多），边界格比例才真实。
+// noise 每个像素随机，表访问完全随机；gradient 像视频画面，相邻像素落在同一片。
+// 精度对比见 CompactLutTest
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactLutBenchmark {
+    private static final int W = 16 * 128;
+    private static final int H = 9 * 128;
+
+    @Param({"full", "compact5", "compact6", "compact5-refined", "compact6-refined"})
+    public String lut;
+
+    @Param({"noise", "gradient"})
+    public String input;
+
+    private final FrameSourceLoader loader = new FrameSourceLoader(null);
+    private final byte[] rgb = new byte[W * H * 3];
+    private final byte[] out = new byte[W * H];
+    private ColorLut table;
+    private File lutFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random r = new Random(42);
+        if (input.equals("noise")) {
+            r.nextBytes(rgb);
+        } else {
+            for (int y = 0, p = 0; y < H; y++)
+                for (int x = 0; x < W; x++) {
+                    rgb[p++] = (byte) (x * 255 / W);
+                    rgb[p++] = (byte) (y * 255 / H);
+                    rgb[p++] = (byte) ((x + y) >> 4);
+                }
+        }
+
+        int[] palette = new int[256];
+        for (int i = 0; i < palette.length; i++)
+            palette[i] = i >= OklabPalette.FIRST_COLOR && i < OklabPalette.FIRST_COLOR + 248 ? r.nextInt(1 << 24) : -1;
+        lutFile = File.createTempFile("compact-bench", ".lut");
+        Files.write(lutFile.toPath(), LutBuilder.build(palette));
+        ColorLut full = ColorLut.map(lutFile);
+        if (lut.equals("full")) {
+            table = full;
+        } else {
+            int bits = lut.startsWith("compact5") ? 5 : 6;
+            table = ColorLut.compact(full, bits, lut.endsWith("-refined") ? palette : null);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        lutFile.delete();
+    }
+
+    @Benchmark
+    public byte[] rgb24ToTiles() throws IOException {
+        return loader.rgb24ToTiles(rgb, W, H, table, out);
+    }
+}
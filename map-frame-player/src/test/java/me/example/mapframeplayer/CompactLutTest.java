@@ -0,0 +1,148 @@
+package me.example.mapframeplayer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// lut.bits=5/6 的精简表和完整 LUT（LutBuilder.build，即逐色 OKLab 最近色）比较，RGB 每通道每 3 取一个采样点。
+// 误差按"选中颜色的 OKLab 距离 - 最近颜色的 OKLab 距离"算（OKLab 单位，0.01 约为刚能分辨的差别）。
+// 32 色随机调色板上的实测：
+//   5-bit        不一致 6.4%，  最大多出 0.028      5-bit 精修  不一致 0.001%，最大多出 0.003
+//   6-bit        不一致 3.3%，  最大多出 0.012      6-bit 精修  全部一致
+// 下面的上限在实测值上留了余量，精修一旦失效（或候选数截断变多）就会超
+class CompactLutTest {
+    private static int[] palette;
+    private static byte[] full;
+    private static float[] paletteLab;
+
+    // 只给 Compact 构造用：它只调 lookup
+    private static final class ArrayLut extends ColorLut {
+        private final byte[] table;
+
+        ArrayLut(byte[] table) {
+            this.table = table;
+        }
+
+        @Override
+        byte lookup(int rgb) {
+            return table[rgb & 0xFFFFFF];
+        }
+
+        @Override
+        void rgb24(byte[] src, int srcOff, byte[] out, int dstOff, int n) {
+            for (int i = 0, p = srcOff; i < n; i++, p += 3)
+                out[dstOff + i] = lookup((src[p] & 0xFF) << 16 | (src[p + 1] & 0xFF) << 8 | (src[p + 2] & 0xFF));
+        }
+
+        @Override
+        void argb(int[] src, int srcOff, byte[] out, int dstOff, int n) {
+            for (int i = 0; i < n; i++)
+                out[dstOff + i] = lookup(src[srcOff + i]);
+        }
+
+        @Override
+        long sizeBytes() {
+            return table.length;
+        }
+
+        @Override
+        String describe() {
+            return "array";
+        }
+    }
+
+    // 完整表要算 1600 万个颜色，几个测试共用一份
+    private static synchronized ColorLut full() {
+        if (full == null) {
+            Random r = new Random(21);
+            palette = new int[256];
+            Arrays.fill(palette, -1);
+            for (int i = 0; i < 32; i++)
+                palette[OklabPalette.FIRST_COLOR + i] = r.nextInt(1 << 24);
+            full = LutBuilder.build(palette);
+            paletteLab = new float[256 * 3];
+            for (int i = 0; i < 256; i++) {
+                if (palette[i] >= 0)
+                    ColorLut.Oklab.fromRgb(palette[i], paletteLab, i * 3);
+            }
+        }
+        return new ArrayLut(full);
+    }
+
+    @Test
+    void fiveBit() {
+        check(5, 0.10, 0.05, 0.0005, 0.01);
+    }
+
+    @Test
+    void sixBit() {
+        check(6, 0.05, 0.025, 0.0001, 0.005);
+    }
+
+    // 不精修 / 精修各自的不一致比例上限和多出误差上限
+    private void check(int bits, double maxMismatch, double maxExtra, double maxRefinedMismatch, double maxRefinedExtra) {
+        ColorLut ref = full();
+        ColorLut plain = ColorLut.compact(ref, bits, null);
+        ColorLut refined = ColorLut.compact(ref, bits, palette);
+
+        // 格子中心本来就是从完整表抄的
+        int shift = 8 - bits, half = 1 << shift >> 1;
+        for (int c = 0; c < 1 << bits; c += 3) {
+            int v = (c << shift) + half;
+            int key = v << 16 | v << 8 | v;
+            assertEquals(full[key], plain.lookup(key), "cell center " + Integer.toHexString(key));
+        }
+
+        Mismatch plainErr = compare(plain);
+        Mismatch refinedErr = compare(refined);
+        String tag = bits + "-bit";
+        assertTrue(plainErr.mismatchRatio() <= maxMismatch, tag + " mismatch " + plainErr.mismatchRatio());
+        assertTrue(plainErr.maxExtra <= maxExtra, tag + " max extra " + plainErr.maxExtra);
+        assertTrue(refinedErr.mismatchRatio() <= maxRefinedMismatch, tag + " refined mismatch " + refinedErr.mismatchRatio());
+        assertTrue(refinedErr.maxExtra <= maxRefinedExtra, tag + " refined max extra " + refinedErr.maxExtra);
+        assertTrue(refinedErr.mismatches <= plainErr.mismatches, tag + " refinement made it worse");
+    }
+
+    private static final class Mismatch {
+        int samples;
+        int mismatches;
+        double maxExtra;
+
+        double mismatchRatio() {
+            return (double) mismatches / samples;
+        }
+    }
+
+    private static Mismatch compare(ColorLut lut) {
+        Mismatch e = new Mismatch();
+        float[] lab = new float[3];
+        for (int r = 0; r < 256; r += 3) {
+            for (int g = 0; g < 256; g += 3) {
+                for (int b = 0; b < 256; b += 3) {
+                    int key = r << 16 | g << 8 | b;
+                    e.samples++;
+                    int want = full[key] & 0xFF;
+                    int got = lut.lookup(key) & 0xFF;
+                    if (want == got)
+                        continue;
+                    e.mismatches++;
+                    ColorLut.Oklab.fromRgb(key, lab, 0);
+                    double extra = Math.sqrt(distSq(lab, got)) - Math.sqrt(distSq(lab, want));
+                    e.maxExtra = Math.max(e.maxExtra, extra);
+                }
+            }
+        }
+        return e;
+    }
+
+    private static double distSq(float[] lab, int idx) {
+        double dl = lab[0] - paletteLab[idx * 3];
+        double da = lab[1] - paletteLab[idx * 3 + 1];
+        double db = lab[2] - paletteLab[idx * 3 + 2];
+        return dl * dl + da * da + db * db;
+    }
+}
@@ -0,0 +1,56 @@
+package me.example.mapframeplayer;
+
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// 被视锥剔除的玩家：vanilla 的画框刷新照样会调 render，这时不能画新帧，
+// 画布停在旧 epoch；转回来 forceRefresh（dropSeen）之后整张补画
+class DataRendererCullingTest {
+    @Test
+    void culledPlayerCanvasStaysOnOldFrameUntilRefresh() {
+        Player p = ViewerSetTest.player(new UUID(1, 1));
+        ViewerSet viewers = new ViewerSet();
+        List<PlayerManager.Tracked> nearby = new ArrayList<>();
+        nearby.add(new PlayerManager.Tracked(p));
+        viewers.update(nearby, 0, 0, 0);
+
+        DataRenderer renderer = new DataRenderer(true);
+        renderer.attach(viewers, null, null);
+        RecordingMapCanvas.WithBuffer canvas = new RecordingMapCanvas.WithBuffer();
+
+        byte[] first = tile((byte) 5);
+        renderer.stageFrame(first, 0, 1);
+        renderer.publishIfStaged();
+        renderer.render(null, canvas, p);
+        assertArrayEquals(first, canvas.pixels());
+
+        viewers.culled().add(p.getUniqueId());
+        byte[] second = tile((byte) 9);
+        renderer.stageFrame(second, 0, 2);
+        renderer.publishIfStaged();
+        canvas.resetRecording();
+        renderer.render(null, canvas, p);
+        assertEquals(0, canvas.setPixelCalls);
+        assertArrayEquals(first, canvas.pixels());
+
+        // 转回来：ScreenSession.updateCulling 移出剔除集合并 forceRefresh
+        viewers.culled().remove(p.getUniqueId());
+        renderer.dropSeen(p.getUniqueId());
+        renderer.render(null, canvas, p);
+        assertArrayEquals(second, canvas.pixels());
+    }
+
+    private static byte[] tile(byte color) {
+        byte[] px = new byte[PaletteFrame.TILE_BYTES];
+        Arrays.fill(px, color);
+        return px;
+    }
+}
@@ -0,0 +1,52 @@
+package me.example.mapframeplayer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// io 线程在 compute() 里被打断时，已经在跑的计算还在写调用方的帧缓冲：
+// compute 必须等它算完才抛，否则调用方把缓冲还回池里，下一条流水线会和它同时写
+class DecodeExecutorsTest {
+    private final DecodeExecutors decoders = new DecodeExecutors(Logger.getLogger("test"), 2);
+
+    @AfterEach
+    void shutdown() {
+        decoders.shutdown(1000);
+    }
+
+    @Test
+    void interruptedComputeWaitsForRunningWork() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean workDone = new AtomicBoolean();
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        AtomicBoolean doneWhenThrown = new AtomicBoolean();
+        DecodeExecutors.Task task = decoders.start("test", () -> {
+            try {
+                decoders.compute(() -> {
+                    started.countDown();
+                    // 不响应打断，模拟正在查表的计算
+                    long end = System.nanoTime() + 200_000_000L;
+                    while (System.nanoTime() < end)
+                        Thread.onSpinWait();
+                    workDone.set(true);
+                });
+            } catch (Throwable t) {
+                doneWhenThrown.set(workDone.get());
+                thrown.set(t);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        task.cancel();
+        assertTrue(task.await(5000));
+        assertTrue(thrown.get() instanceof InterruptedIOException, String.valueOf(thrown.get()));
+        assertTrue(doneWhenThrown.get(), "compute threw before the running work finished");
+    }
+}
@@ -0,0 +1,91 @@
+package me.example.mapframeplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// 16x9 墙一帧 rgb24 -> 调色板索引，单线程：16 MB 表 vs lut.engine=direct 的标量 / SIMD 内核。
+// noise 每个像素都是新颜色，几乎全部落到内核上（最坏情况）；gradient 像视频画面，大多命中 64K 缓存。
+// fork 带了 --add-modules jdk.incubator.vector，direct-vector 才会加载 VectorPaletteKernel（加载失败会退回标量并打警告）。
+// 调色板是固定种子的 248 个随机颜色，和真实地图调色板一样多，搜索代价相当
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class DirectPaletteLutBenchmark {
+    private static final int W = 16 * 128;
+    private static final int H = 9 * 128;
+
+    @Param({"table", "direct-scalar", "direct-vector"})
+    public String engine;
+
+    @Param({"noise", "gradient"})
+    public String input;
+
+    private final FrameSourceLoader loader = new FrameSourceLoader(null);
+    private final byte[] rgb = new byte[W * H * 3];
+    private final byte[] out = new byte[W * H];
+    private ColorLut lut;
+    private File lutFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random r = new Random(42);
+        if (input.equals("noise")) {
+            r.nextBytes(rgb);
+        } else {
+            for (int y = 0, p = 0; y < H; y++)
+                for (int x = 0; x < W; x++) {
+                    rgb[p++] = (byte) (x * 255 / W);
+                    rgb[p++] = (byte) (y * 255 / H);
+                    rgb[p++] = (byte) ((x + y) >> 4);
+                }
+        }
+
+        int[] palette = new int[256];
+        for (int i = 0; i < palette.length; i++)
+            palette[i] = i >= OklabPalette.FIRST_COLOR && i < OklabPalette.FIRST_COLOR + 248 ? r.nextInt(1 << 24) : -1;
+
+        if (engine.equals("table")) {
+            // 查表代价和内容无关，不用真的跑一遍 LutBuilder
+            byte[] full = new byte[ColorLut.FULL_SIZE];
+            for (int i = 0; i < full.length; i++)
+                full[i] = (byte) (OklabPalette.FIRST_COLOR + (i * 0x9E3779B1 >>> 25));
+            lutFile = File.createTempFile("direct-bench", ".lut");
+            Files.write(lutFile.toPath(), full);
+            lut = ColorLut.map(lutFile);
+        } else {
+            lut = DirectPaletteLut.create(palette, engine.equals("direct-vector"), Logger.getLogger("bench"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (lutFile != null)
+            lutFile.delete();
+    }
+
+    @Benchmark
+    public byte[] rgb24ToTiles() throws IOException {
+        return loader.rgb24ToTiles(rgb, W, H, lut, out);
+    }
+}
@@ -0,0 +1,87 @@
+package me.example.mapframeplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+// 16x9 墙一帧的 floyd-steinberg：逐行 vs 波前（dither.wavefront 强制 false / true），在 threads 个线程的 fork/join 池里跑。
+// 逐行版不随线程数变化，是基线；auto 的门槛（Dither.WAVEFRONT_AUTO_TILES）按多核上的结果调：
+// ... org.openjdk.jmh.Main Dither -p threads=1,2,4,8
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DitherBenchmark {
+    private static final int W = 16 * 128;
+    private static final int H = 9 * 128;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"raster", "wavefront"})
+    public String mode;
+
+    private final byte[] rgb = new byte[W * H * 3];
+    private final byte[] out = new byte[W * H];
+    private ForkJoinPool pool;
+    private Dither dither;
+    private File lutFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // 平滑的画面，误差不会一直顶在截断上
+        for (int y = 0, p = 0; y < H; y++)
+            for (int x = 0; x < W; x++) {
+                double u = x / (double) W, v = y / (double) H;
+                rgb[p++] = (byte) (128 + 100 * Math.sin(6 * u + 2 * v));
+                rgb[p++] = (byte) (128 + 90 * Math.sin(4 * v + 3 * u * v));
+                rgb[p++] = (byte) (128 + 80 * Math.cos(5 * u * u + 7 * v));
+            }
+        Random r = new Random(42);
+        int[] palette = new int[256];
+        for (int i = 0; i < palette.length; i++)
+            palette[i] = i >= OklabPalette.FIRST_COLOR && i < OklabPalette.FIRST_COLOR + 248 ? r.nextInt(1 << 24) : -1;
+        byte[] full = new byte[ColorLut.FULL_SIZE];
+        for (int i = 0; i < full.length; i++)
+            full[i] = (byte) (OklabPalette.FIRST_COLOR + (i * 0x9E3779B1 >>> 25));
+        lutFile = File.createTempFile("dither-bench", ".lut");
+        Files.write(lutFile.toPath(), full);
+        dither = Dither.create(Dither.Mode.FLOYD_STEINBERG, 0, mode.equals("wavefront") ? Dither.Wavefront.ON : Dither.Wavefront.OFF,
+                ColorLut.map(lutFile), palette);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+        lutFile.delete();
+    }
+
+    @Benchmark
+    public byte[] floydSteinberg() {
+        return pool.invoke(ForkJoinTask.adapt(() -> {
+            dither.rgb24ToTiles(rgb, W, H, out);
+            return out;
+        }));
+    }
+}
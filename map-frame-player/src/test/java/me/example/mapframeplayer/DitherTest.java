@@ -0,0 +1,157 @@
+package me.example.mapframeplayer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 默认的逐行误差扩散要和按定义写的参考实现逐字节一致；波前版本（fork/join 池里并行）要和逐行版一致。
+// 尺寸覆盖单块、高大于宽、宽远大于高的情况
+class DitherTest {
+    private static final int[][] SIZES = {{128, 128}, {256, 384}, {640, 128}, {384, 256}};
+
+    // 每通道 2 位，64 个颜色放在 FIRST_COLOR 之后；调色板里的颜色就是各档的中点
+    private static final class LevelLut extends ColorLut {
+        @Override
+        byte lookup(int rgb) {
+            int r = (rgb >> 22) & 3, g = (rgb >> 14) & 3, b = (rgb >> 6) & 3;
+            return (byte) (OklabPalette.FIRST_COLOR + (r << 4 | g << 2 | b));
+        }
+
+        @Override
+        void rgb24(byte[] src, int srcOff, byte[] out, int dstOff, int n) {
+            for (int i = 0, p = srcOff; i < n; i++, p += 3)
+                out[dstOff + i] = lookup((src[p] & 0xFF) << 16 | (src[p + 1] & 0xFF) << 8 | (src[p + 2] & 0xFF));
+        }
+
+        @Override
+        void argb(int[] src, int srcOff, byte[] out, int dstOff, int n) {
+            for (int i = 0; i < n; i++)
+                out[dstOff + i] = lookup(src[srcOff + i]);
+        }
+
+        @Override
+        long sizeBytes() {
+            return 0;
+        }
+
+        @Override
+        String describe() {
+            return "levels";
+        }
+
+        static int[] palette() {
+            int[] pal = new int[256];
+            Arrays.fill(pal, -1);
+            for (int i = 0; i < 64; i++) {
+                int r = (i >> 4) * 64 + 32, g = ((i >> 2) & 3) * 64 + 32, b = (i & 3) * 64 + 32;
+                pal[OklabPalette.FIRST_COLOR + i] = r << 16 | g << 8 | b;
+            }
+            return pal;
+        }
+    }
+
+    private final ColorLut lut = new LevelLut();
+    private final int[] palette = LevelLut.palette();
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void rasterMatchesReference() throws Exception {
+        Dither raster = Dither.create(Dither.Mode.FLOYD_STEINBERG, 0, Dither.Wavefront.OFF, lut, palette);
+        for (int[] size : SIZES) {
+            int w = size[0], h = size[1];
+            byte[] rgb = frame(w, h);
+            byte[] out = new byte[w * h];
+            // 第二遍用的是复用的误差缓冲
+            raster.rgb24ToTiles(rgb, w, h, out);
+            raster.rgb24ToTiles(rgb, w, h, out);
+            assertArrayEquals(reference(rgb, w, h), out, w + "x" + h);
+        }
+    }
+
+    @Test
+    void wavefrontMatchesRaster() throws Exception {
+        Dither raster = Dither.create(Dither.Mode.FLOYD_STEINBERG, 0, Dither.Wavefront.OFF, lut, palette);
+        Dither wavefront = Dither.create(Dither.Mode.FLOYD_STEINBERG, 0, Dither.Wavefront.ON, lut, palette);
+        for (int[] size : SIZES) {
+            int w = size[0], h = size[1];
+            byte[] rgb = frame(w, h);
+            byte[] expected = new byte[w * h];
+            raster.rgb24ToTiles(rgb, w, h, expected);
+            byte[] out = new byte[w * h];
+            for (int i = 0; i < 2; i++)
+                pool.invoke(ForkJoinTask.adapt(() -> {
+                    wavefront.rgb24ToTiles(rgb, w, h, out);
+                    return null;
+                }));
+            assertArrayEquals(expected, out, w + "x" + h + " in pool");
+            wavefront.rgb24ToTiles(rgb, w, h, out);
+            assertArrayEquals(expected, out, w + "x" + h + " sequential tiles");
+        }
+    }
+
+    // auto：大墙且在多线程池里才走波前；单线程池里波前只会更慢
+    @Test
+    void autoWavefrontOnlyForLargeFramesInParallelPool() {
+        assertTrue(Dither.useWavefront(Dither.Wavefront.AUTO, 16 * 128, 9 * 128, true));
+        assertFalse(Dither.useWavefront(Dither.Wavefront.AUTO, 16 * 128, 9 * 128, false));
+        assertFalse(Dither.useWavefront(Dither.Wavefront.AUTO, 4 * 128, 4 * 128, true));
+        assertTrue(Dither.useWavefront(Dither.Wavefront.AUTO, 8 * 128, 8 * 128, true));
+        assertTrue(Dither.useWavefront(Dither.Wavefront.ON, 128, 128, false));
+        assertFalse(Dither.useWavefront(Dither.Wavefront.OFF, 16 * 128, 9 * 128, true));
+    }
+
+    private static byte[] frame(int w, int h) {
+        Random r = new Random(w * 31 + h);
+        byte[] rgb = new byte[w * h * 3];
+        for (int y = 0, p = 0; y < h; y++)
+            for (int x = 0; x < w; x++) {
+                rgb[p++] = (byte) (x * 255 / w);
+                rgb[p++] = (byte) (y * 255 / h);
+                rgb[p++] = (byte) (100 + r.nextInt(40));
+            }
+        return rgb;
+    }
+
+    // 按定义：左 7/16、右上 3/16、正上 5/16、左上 1/16，四舍五入后加到原色上再截断
+    private byte[] reference(byte[] rgb, int w, int h) {
+        int[] err = new int[w * h * 3];
+        byte[] out = new byte[w * h];
+        int[] v = new int[3];
+        for (int y = 0; y < h; y++)
+            for (int x = 0; x < w; x++) {
+                for (int c = 0; c < 3; c++) {
+                    int s = 0;
+                    if (x > 0)
+                        s += 7 * err[(y * w + x - 1) * 3 + c];
+                    if (y > 0) {
+                        if (x > 0)
+                            s += err[((y - 1) * w + x - 1) * 3 + c];
+                        s += 5 * err[((y - 1) * w + x) * 3 + c];
+                        if (x < w - 1)
+                            s += 3 * err[((y - 1) * w + x + 1) * 3 + c];
+                    }
+                    v[c] = Math.max(0, Math.min(255, (rgb[(y * w + x) * 3 + c] & 0xFF) + ((s + 8) >> 4)));
+                }
+                int idx = lut.lookup(v[0] << 16 | v[1] << 8 | v[2]) & 0xFF;
+                out[PaletteFrame.index(x, y, w / 128)] = (byte) idx;
+                int p = palette[idx];
+                err[(y * w + x) * 3] = v[0] - (p >> 16 & 0xFF);
+                err[(y * w + x) * 3 + 1] = v[1] - (p >> 8 & 0xFF);
+                err[(y * w + x) * 3 + 2] = v[2] - (p & 0xFF);
+            }
+        return out;
+    }
+}
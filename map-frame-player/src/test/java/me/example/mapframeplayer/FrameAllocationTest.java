@@ -0,0 +1,116 @@
+package me.example.mapframeplayer;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// 16x9 墙一帧的解码 -> 哈希 -> 暂存/发布到 144 个渲染器，帧数组来自池（复用）。
+// 以前每张地图切一份 byte[16384] 再拷两次（每帧约 6.9 MB）；现在渲染器直接引用整帧数组，
+// 每帧只剩 Frame 头和哈希数组这类小对象。
+class FrameAllocationTest {
+    private static final int COLS = 16;
+    private static final int ROWS = 9;
+    private static final int W = COLS * 128;
+    private static final int H = ROWS * 128;
+    private static final int TILES = COLS * ROWS;
+    // 远小于一张地图的像素（16 KB），多切一份块拷贝就会超
+    private static final long MAX_BYTES_PER_FRAME = 64 * 1024;
+
+    // 不需要真 LUT：取低 7 位当调色板索引
+    private static final class MaskLut extends ColorLut {
+        @Override
+        byte lookup(int rgb) {
+            return (byte) (rgb & 0x7F);
+        }
+
+        @Override
+        void rgb24(byte[] src, int srcOff, byte[] out, int dstOff, int n) {
+            for (int i = 0, p = srcOff; i < n; i++, p += 3)
+                out[dstOff + i] = (byte) (src[p + 2] & 0x7F);
+        }
+
+        @Override
+        void argb(int[] src, int srcOff, byte[] out, int dstOff, int n) {
+            for (int i = 0; i < n; i++)
+                out[dstOff + i] = (byte) (src[srcOff + i] & 0x7F);
+        }
+
+        @Override
+        long sizeBytes() {
+            return 0;
+        }
+
+        @Override
+        String describe() {
+            return "mask";
+        }
+    }
+
+    @Test
+    void steadyStateFrameDoesNotCopyTiles() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "no per-thread allocation counter");
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(mx.isThreadAllocatedMemorySupported(), "no per-thread allocation counter");
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        FrameSourceLoader loader = new FrameSourceLoader(null);
+        ColorLut lut = new MaskLut();
+        Random r = new Random(7);
+        byte[][] rgb = new byte[2][W * H * 3];
+        r.nextBytes(rgb[0]);
+        r.nextBytes(rgb[1]);
+        // 两个池里的帧数组交替用
+        byte[][] pool = {new byte[W * H], new byte[W * H]};
+        DataRenderer[] renderers = new DataRenderer[TILES];
+        for (int i = 0; i < TILES; i++)
+            renderers[i] = new DataRenderer(true);
+
+        long epoch = 0;
+        for (int i = 0; i < 20; i++)
+            frame(loader, lut, rgb[i & 1], pool[i & 1], renderers, ++epoch);
+
+        int frames = 20;
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < frames; i++)
+            frame(loader, lut, rgb[i & 1], pool[i & 1], renderers, ++epoch);
+        long perFrame = (mx.getThreadAllocatedBytes(tid) - before) / frames;
+
+        assertTrue(perFrame < MAX_BYTES_PER_FRAME,
+                "allocated " + perFrame + " bytes per frame (limit " + MAX_BYTES_PER_FRAME + ")");
+    }
+
+    @Test
+    void tileMajorLayoutMatchesRowMajorSource() throws Exception {
+        FrameSourceLoader loader = new FrameSourceLoader(null);
+        byte[] rgb = new byte[W * H * 3];
+        new Random(11).nextBytes(rgb);
+        byte[] tiles = loader.rgb24ToTiles(rgb, W, H, new MaskLut());
+        for (int t = 0; t < TILES; t++) {
+            int tx = (t % COLS) * 128, ty = (t / COLS) * 128;
+            byte[] want = new byte[PaletteFrame.TILE_BYTES];
+            for (int y = 0; y < 128; y++)
+                for (int x = 0; x < 128; x++)
+                    want[y * 128 + x] = (byte) (rgb[((ty + y) * W + tx + x) * 3 + 2] & 0x7F);
+            byte[] got = java.util.Arrays.copyOfRange(tiles, PaletteFrame.tileOffset(t),
+                    PaletteFrame.tileOffset(t) + PaletteFrame.TILE_BYTES);
+            assertArrayEquals(want, got, "tile " + t);
+        }
+    }
+
+    private static void frame(FrameSourceLoader loader, ColorLut lut, byte[] rgb, byte[] out,
+                              DataRenderer[] renderers, long epoch) throws Exception {
+        loader.rgb24ToTiles(rgb, W, H, lut, out);
+        PaletteFrame f = PaletteFrame.hashed(out, COLS, ROWS);
+        for (int i = 0; i < renderers.length; i++)
+            renderers[i].stageFrame(f.pixels, PaletteFrame.tileOffset(i), epoch);
+        for (DataRenderer d : renderers)
+            d.publishIfStaged();
+    }
+}
@@ -0,0 +1,62 @@
+package me.example.mapframeplayer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameRingTest {
+    @Test
+    void dropOldestCountsAndRecycles() {
+        List<Integer> recycled = new ArrayList<>();
+        FrameRing<Integer> ring = new FrameRing<>(2, recycled::add);
+        for (int i = 0; i < 5; i++)
+            ring.offerDropOldest(i);
+        assertEquals(3, ring.dropped());
+        assertEquals(List.of(0, 1, 2), recycled);
+        assertEquals(3, (int) ring.poll());
+        assertEquals(4, (int) ring.poll());
+
+        ring.setLimit(0);
+        ring.offerDropOldest(5);
+        assertEquals(4, ring.dropped());
+        ring.clear();
+        assertEquals(0, ring.dropped());
+    }
+
+    // 停不下来的旧流水线和新流水线同时在 awaitSpace 里：后来的那个离开时不能清掉先登记的，
+    // 否则消费者取走帧时叫不醒它
+    @Test
+    void overlappingProducerKeepsFirstWaiterRegistered() throws Exception {
+        FrameRing<Integer> ring = new FrameRing<>(1, x -> {
+        });
+        ring.offer(0);
+
+        AtomicBoolean gotSpace = new AtomicBoolean();
+        Thread first = new Thread(() -> gotSpace.set(ring.awaitSpace(() -> true)));
+        first.start();
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (ring.waiter() != first && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertSame(first, ring.waiter());
+
+        // 第二个生产者等了一轮就放弃
+        AtomicInteger calls = new AtomicInteger();
+        assertFalse(ring.awaitSpace(() -> calls.incrementAndGet() == 1));
+        assertSame(first, ring.waiter());
+
+        assertEquals(0, (int) ring.poll());
+        first.join(5_000);
+        assertFalse(first.isAlive());
+        assertTrue(gotSpace.get());
+        assertNull(ring.waiter());
+    }
+}
@@ -0,0 +1,104 @@
+package me.example.mapframeplayer;
+
+import org.bukkit.map.MapCanvas;
+import org.bukkit.map.MapCursorCollection;
+import org.bukkit.map.MapFont;
+import org.bukkit.map.MapView;
+
+import java.awt.Color;
+import java.awt.Image;
+
+// 测试用画布：setPixel 按 CraftMapCanvas（1.20.1）的语义，只在颜色变化时写入并扩大脏区域（包围盒），
+// 另外记下每次 setPixel 的坐标。像素数组由子类提供，字段名决定 CanvasWriter 能不能走快路径。
+abstract class RecordingMapCanvas implements MapCanvas {
+    int setPixelCalls;
+    final boolean[] setPixelAt = new boolean[128 * 128];
+    int dirtyMinX = 128, dirtyMinY = 128, dirtyMaxX = -1, dirtyMaxY = -1;
+
+    abstract byte[] pixels();
+
+    void resetRecording() {
+        setPixelCalls = 0;
+        java.util.Arrays.fill(setPixelAt, false);
+        dirtyMinX = dirtyMinY = 128;
+        dirtyMaxX = dirtyMaxY = -1;
+    }
+
+    boolean dirtyCovers(int x0, int y0, int x1, int y1) {
+        return dirtyMinX <= x0 && dirtyMinY <= y0 && dirtyMaxX >= x1 && dirtyMaxY >= y1;
+    }
+
+    public void setPixel(int x, int y, byte color) {
+        if (x < 0 || y < 0 || x >= 128 || y >= 128)
+            return;
+        setPixelCalls++;
+        setPixelAt[y * 128 + x] = true;
+        byte[] px = pixels();
+        if (px[y * 128 + x] != color) {
+            px[y * 128 + x] = color;
+            dirtyMinX = Math.min(dirtyMinX, x);
+            dirtyMinY = Math.min(dirtyMinY, y);
+            dirtyMaxX = Math.max(dirtyMaxX, x);
+            dirtyMaxY = Math.max(dirtyMaxY, y);
+        }
+    }
+
+    public byte getPixel(int x, int y) {
+        return pixels()[y * 128 + x];
+    }
+
+    public byte getBasePixel(int x, int y) {
+        return 0;
+    }
+
+    public MapView getMapView() {
+        return null;
+    }
+
+    public MapCursorCollection getCursors() {
+        return null;
+    }
+
+    public void setCursors(MapCursorCollection cursors) {
+    }
+
+    public void setPixelColor(int x, int y, Color color) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Color getPixelColor(int x, int y) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Color getBasePixelColor(int x, int y) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void drawImage(int x, int y, Image image) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void drawText(int x, int y, MapFont font, String text) {
+        throw new UnsupportedOperationException();
+    }
+
+    // 与 CraftMapCanvas 同名同类型的字段：CanvasWriter 走直接写 buffer 的快路径
+    static final class WithBuffer extends RecordingMapCanvas {
+        private final byte[] buffer = new byte[128 * 128];
+
+        @Override
+        byte[] pixels() {
+            return buffer;
+        }
+    }
+
+    // 没有 buffer 字段：只能走 setPixel
+    static final class WithoutBuffer extends RecordingMapCanvas {
+        private final byte[] pixels = new byte[128 * 128];
+
+        @Override
+        byte[] pixels() {
+            return pixels;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package me.example.mapframeplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+// 16x9 墙一帧 rgb24 -> 调色板索引，在 threads 个线程的 fork/join 池里跑（和 DecodeExecutors.compute 一样），
+// 看 RowBands 行带并行随核数的伸缩。threads=1 时 RowBands 不拆分，就是顺序基线。
+// 多核机器上跑：... org.openjdk.jmh.Main RowBands -p threads=1,2,4,8
+// full 是 16 MB 的 mmap 表（内容无所谓，查表代价一样），compact6 是从它抽出的 256 KB 表
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowBandsBenchmark {
+    private static final int W = 16 * 128;
+    private static final int H = 9 * 128;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"full", "compact6"})
+    public String lut;
+
+    private final FrameSourceLoader loader = new FrameSourceLoader(null);
+    private final byte[] rgb = new byte[W * H * 3];
+    private final byte[] out = new byte[W * H];
+    private ForkJoinPool pool;
+    private ColorLut table;
+    private File lutFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        new Random(42).nextBytes(rgb);
+        byte[] full = new byte[ColorLut.FULL_SIZE];
+        for (int i = 0; i < full.length; i++)
+            full[i] = (byte) (4 + (i * 0x9E3779B1 >>> 25));
+        lutFile = File.createTempFile("rowbands", ".lut");
+        Files.write(lutFile.toPath(), full);
+        table = ColorLut.map(lutFile);
+        if (lut.equals("compact6"))
+            table = ColorLut.compact(table, 6, null);
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+        // 映射在 buffer 回收前一直有效，删文件不影响
+        lutFile.delete();
+    }
+
+    @Benchmark
+    public byte[] rgb24ToTiles() {
+        return pool.invoke(ForkJoinTask.adapt(() -> loader.rgb24ToTiles(rgb, W, H, table, out)));
+    }
+}
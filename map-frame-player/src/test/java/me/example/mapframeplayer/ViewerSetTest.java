@@ -0,0 +1,78 @@
+package me.example.mapframeplayer;
+
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 范围内人数忽多忽少时，两个互换的 players 数组长度会错开，distSq 要能跟上
+class ViewerSetTest {
+    private final List<PlayerManager.Tracked> crowd = new ArrayList<>();
+
+    @Test
+    void growShrinkGrowKeepsDistancesInBounds() {
+        ViewerSet set = new ViewerSet();
+        for (int n : new int[]{20, 5, 5, 9, 20, 3, 40, 1, 40}) {
+            List<PlayerManager.Tracked> nearby = nearby(n);
+            set.update(nearby, 0, 0, 0);
+            assertEquals(n, set.size());
+            for (int i = 0; i < n; i++) {
+                assertSame(nearby.get(i).player, set.player(i));
+                assertEquals((long) (i * i), (long) set.distSq(i), "n=" + n + " slot " + i);
+            }
+        }
+    }
+
+    @Test
+    void reportsEnteredAndLeft() {
+        ViewerSet set = new ViewerSet();
+        set.update(nearby(5), 0, 0, 0);
+        assertEquals(5, set.entered().size());
+        set.update(nearby(2), 0, 0, 0);
+        assertEquals(0, set.entered().size());
+        assertEquals(3, set.left().size());
+        Set<UUID> left = new HashSet<>(set.left());
+        for (int i = 2; i < 5; i++)
+            assertTrue(left.contains(crowd.get(i).player.getUniqueId()));
+        set.update(nearby(4), 0, 0, 0);
+        assertEquals(2, set.entered().size());
+        assertEquals(0, set.left().size());
+    }
+
+    // 前 n 个玩家，第 i 个在 x = i 处；同一个下标始终是同一个玩家
+    private List<PlayerManager.Tracked> nearby(int n) {
+        while (crowd.size() < n) {
+            PlayerManager.Tracked t = new PlayerManager.Tracked(player(new UUID(7, crowd.size())));
+            t.x = crowd.size();
+            crowd.add(t);
+        }
+        return new ArrayList<>(crowd.subList(0, n));
+    }
+
+    static Player player(UUID id) {
+        return (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getUniqueId":
+                            return id;
+                        case "hashCode":
+                            return id.hashCode();
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "player " + id;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}